@@ -5,8 +5,9 @@ import java.util.Scanner;
  */
 public class App {
     public static void main(String[] args) {
-        IterableSortedCollection<Song> tree = new IterableRedBlackTree(); 
-        BackendInterface backend = new Backend(tree);
+        IterableSortedCollection<Song> tree = new SongRedBlackTree();
+        Backend backend = new Backend(tree);
+        backend.setLoadParallelism(Runtime.getRuntime().availableProcessors());
         Scanner in = new Scanner(System.in);
         FrontendInterface frontend = new Frontend(in,backend);
 
@@ -0,0 +1,629 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * This class is a red-black tree that stores its nodes in parallel arrays instead of
+ * RBTNode objects. A node is an index into those arrays: the left, right and parent
+ * links and the subtree size are ints, the color is a single bit of a long[] bitset,
+ * and the value is a slot of an Object[]. A node therefore costs about 20 bytes
+ * instead of the 40 of an RBTNode object, and the nodes are laid out contiguously,
+ * without object headers in between.
+ *
+ * The repairs after an insert follow the same cases as RedBlackTree.ensureRedProperty,
+ * and rotations work like BSTRotation.rotate, only on indices. Nodes stay packed in
+ * the first size() slots: removing a node moves the node in the last slot into the
+ * slot that was freed.
+ *
+ * @param <T> The type of data stored in the tree, must be comparable
+ */
+public class ArrayRedBlackTree<T extends Comparable<T>> implements IterableSortedCollection<T> {
+
+    // index used for missing children and for the parent of the root
+    protected static final int NIL = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    protected Object[] values = new Object[INITIAL_CAPACITY];
+    protected int[] lefts = new int[INITIAL_CAPACITY];
+    protected int[] rights = new int[INITIAL_CAPACITY];
+    protected int[] parents = new int[INITIAL_CAPACITY];
+    protected int[] sizes = new int[INITIAL_CAPACITY];
+    private long[] redBits = new long[1];
+    protected int root = NIL;
+    protected int count = 0;
+
+    // Fields to store the minimum and maximum values for the iterator
+    private Comparable<T> min = null;
+    private Comparable<T> max = null;
+
+    /**
+     * Inserts a new data value into the tree. The new value is always inserted as a
+     * red node, and the red-black properties are then enforced.
+     * @param data the new value being inserted
+     * @throws NullPointerException if data argument is null
+     */
+    @Override
+    public void insert(T data) throws NullPointerException {
+        if (data == null) {
+            throw new NullPointerException("Data cannot be null."); // Check for null input
+        }
+        int node = newNode(data, true);
+        if (root == NIL) {
+            root = node;
+            setRed(root, false); // Root is always black
+            return;
+        }
+
+        // Descend to the new node's position, counting it in every subtree on the way
+        int current = root;
+        while (true) {
+            sizes[current]++;
+            if (data.compareTo(value(current)) > 0) {
+                if (rights[current] == NIL) {
+                    rights[current] = node;
+                    break;
+                }
+                current = rights[current];
+            } else {
+                if (lefts[current] == NIL) {
+                    lefts[current] = node;
+                    break;
+                }
+                current = lefts[current];
+            }
+        }
+        parents[node] = current;
+        ensureRedProperty(node);
+        setRed(root, false); // Ensure the root is black after all repairs
+    }
+
+    /**
+     * Inserts many values into the tree at once. The values are sorted, merged with
+     * the values already stored, and the arrays are then refilled with a balanced
+     * tree built from that sorted sequence.
+     * @param newValues the new values being inserted
+     * @throws NullPointerException if newValues or any of its elements is null
+     */
+    @Override
+    public void insertAll(List<T> newValues) throws NullPointerException {
+        List<T> sorted = new ArrayList<>(newValues);
+        for (T data : sorted) {
+            if (data == null) {
+                throw new NullPointerException("Data cannot be null."); // Check for null input
+            }
+        }
+        sorted.sort(null);
+
+        // Merge with the values already stored, keeping them before equal new values
+        List<T> merged = new ArrayList<>(count + sorted.size());
+        int i = 0;
+        Iterator<T> existing = new ArrayIterator(null, null);
+        T current = existing.hasNext() ? existing.next() : null;
+        while (current != null || i < sorted.size()) {
+            if (current != null && (i == sorted.size() || sorted.get(i).compareTo(current) >= 0)) {
+                merged.add(current);
+                current = existing.hasNext() ? existing.next() : null;
+            } else {
+                merged.add(sorted.get(i++));
+            }
+        }
+
+        clear();
+        ensureCapacity(merged.size());
+        if (!merged.isEmpty()) {
+            // Nodes on the deepest level are red, so that every path to a leaf passes
+            // through the same number of black nodes
+            int redDepth = 31 - Integer.numberOfLeadingZeros(merged.size());
+            root = buildBalanced(merged, 0, merged.size() - 1, 0, redDepth);
+            parents[root] = NIL;
+            setRed(root, false);
+        }
+    }
+
+    /**
+     * Removes one occurrence of data from the tree. Among the values that compare
+     * equal to data, the one that equals() it is removed.
+     * @param data the value being removed
+     * @return true if a value was removed, false if data was not in the tree
+     * @throws NullPointerException if data argument is null
+     */
+    @Override
+    public boolean remove(T data) throws NullPointerException {
+        if (data == null) {
+            throw new NullPointerException("Data cannot be null."); // Check for null input
+        }
+        int node = findNode(data);
+        if (node == NIL) {
+            return false;
+        }
+
+        // A node with two children takes the value of its successor, and the
+        // successor's node, which has at most one child, is removed instead
+        if (lefts[node] != NIL && rights[node] != NIL) {
+            int successor = rights[node];
+            while (lefts[successor] != NIL) {
+                successor = lefts[successor];
+            }
+            copyValue(successor, node);
+            node = successor;
+        }
+
+        int child = (lefts[node] != NIL) ? lefts[node] : rights[node];
+        int parent = parents[node];
+        replaceChild(parent, node, child);
+        for (int ancestor = parent; ancestor != NIL; ancestor = parents[ancestor]) {
+            sizes[ancestor]--;
+        }
+
+        if (!isRed(node)) {
+            if (child != NIL) {
+                setRed(child, false); // A red child takes the place of its black parent
+            } else if (parent != NIL) {
+                ensureBlackHeight(parent, lefts[parent] == NIL);
+            }
+        }
+        release(node);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Comparable<T> data) {
+        if (data == null) {
+            return false; // Null not allowed
+        }
+        int node = root;
+        while (node != NIL) {
+            int comparison = data.compareTo(value(node)); // Compare once per level
+            if (comparison == 0) {
+                return true;
+            }
+            node = (comparison > 0) ? rights[node] : lefts[node];
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, 0, count, null);
+        Arrays.fill(redBits, 0L);
+        root = NIL;
+        count = 0;
+    }
+
+    @Override
+    public int rank(Comparable<T> key) {
+        return countBelow(key, false);
+    }
+
+    @Override
+    public T select(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + count);
+        }
+        int node = root;
+        while (true) {
+            int leftSize = sizeOf(lefts[node]);
+            if (index < leftSize) {
+                node = lefts[node];
+            } else if (index == leftSize) {
+                return value(node);
+            } else {
+                index -= leftSize + 1;
+                node = rights[node];
+            }
+        }
+    }
+
+    @Override
+    public int countInRange(Comparable<T> lo, Comparable<T> hi) {
+        int atMostHi = (hi == null) ? count : countBelow(hi, true);
+        int belowLo = (lo == null) ? 0 : countBelow(lo, false);
+        return Math.max(0, atMostHi - belowLo);
+    }
+
+    /**
+     * Allows setting the start (minimum) value of the iterator. Every iterator created
+     * after this call uses this minimum, until it is set again.
+     * @param min the minimum for iterators created for this tree, or null for no minimum
+     */
+    @Override
+    public void setIteratorMin(Comparable<T> min) {
+        this.min = min;
+    }
+
+    /**
+     * Allows setting the stop (maximum) value of the iterator. Every iterator created
+     * after this call uses this maximum, until it is set again.
+     * @param max the maximum for iterators created for this tree, or null for no maximum
+     */
+    @Override
+    public void setIteratorMax(Comparable<T> max) {
+        this.max = max;
+    }
+
+    /**
+     * Returns an iterator over the values from the minimum to the maximum set for
+     * iterators, in sorted order.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new ArrayIterator(min, max);
+    }
+
+    /**
+     * Iterator that follows an in-order traversal of the tree, keeping the indices of
+     * the nodes still to visit on an int stack.
+     */
+    private class ArrayIterator implements Iterator<T> {
+        private final Comparable<T> max;
+        private int[] stack = new int[64];
+        private int depth = 0;
+
+        private ArrayIterator(Comparable<T> min, Comparable<T> max) {
+            this.max = max;
+            // Push the path to the first value that is not below min
+            for (int node = root; node != NIL; ) {
+                if (min == null || min.compareTo(value(node)) <= 0) {
+                    push(node);
+                    node = lefts[node];
+                } else {
+                    node = rights[node]; // Skip left if below min
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return depth > 0 && (max == null || max.compareTo(value(stack[depth - 1])) >= 0);
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more elements in the iterator");
+            }
+            int node = stack[--depth];
+            for (int next = rights[node]; next != NIL; next = lefts[next]) {
+                push(next);
+            }
+            return value(node);
+        }
+
+        private void push(int node) {
+            if (depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth * 2);
+            }
+            stack[depth++] = node;
+        }
+    }
+
+    /**
+     * Repairs a red property violation caused by the given red node having a red
+     * parent, with the same cases as RedBlackTree.ensureRedProperty.
+     * @param node the red node with a red parent
+     */
+    protected void ensureRedProperty(int node) {
+        while (parents[node] != NIL && isRed(parents[node])) {
+            int parent = parents[node];
+            int grandparent = parents[parent];
+            int uncle = (lefts[grandparent] == parent) ? rights[grandparent] : lefts[grandparent];
+
+            // Case 1: Uncle is red (recoloring), continue with grandparent
+            if (uncle != NIL && isRed(uncle)) {
+                setRed(parent, false);
+                setRed(uncle, false);
+                setRed(grandparent, true);
+                node = grandparent;
+                continue;
+            }
+            // Case 3: Uncle is black and node forms a zigzag, rotate it into a line
+            if ((lefts[parent] == node) != (lefts[grandparent] == parent)) {
+                rotate(node, parent);
+                parent = node;
+            }
+            // Case 2: Uncle is black and node forms a line
+            rotate(parent, grandparent);
+            setRed(parent, false);
+            setRed(grandparent, true);
+            return;
+        }
+    }
+
+    /**
+     * Repairs a black height violation left by removing a black node, with the same
+     * cases as RedBlackTree.remove.
+     * @param parent the parent of the subtree that is missing a black node
+     * @param leftSide whether that subtree is parent's left subtree
+     */
+    private void ensureBlackHeight(int parent, boolean leftSide) {
+        int node = leftSide ? lefts[parent] : rights[parent];
+        while (parent != NIL && !isRed(node)) {
+            int sibling = leftSide ? rights[parent] : lefts[parent];
+
+            // Case 1: Red sibling, rotate it above parent to get a black sibling
+            if (isRed(sibling)) {
+                rotate(sibling, parent);
+                setRed(sibling, false);
+                setRed(parent, true);
+                sibling = leftSide ? rights[parent] : lefts[parent];
+            }
+
+            int near = leftSide ? lefts[sibling] : rights[sibling];
+            int far = leftSide ? rights[sibling] : lefts[sibling];
+            // Case 2: Black sibling with black children, move the missing black node up
+            if (!isRed(near) && !isRed(far)) {
+                setRed(sibling, true);
+                node = parent;
+                parent = parents[node];
+                leftSide = parent != NIL && lefts[parent] == node;
+                continue;
+            }
+            // Case 3: Black sibling whose far child is black, rotate the near child up
+            if (!isRed(far)) {
+                rotate(near, sibling);
+                setRed(near, false);
+                setRed(sibling, true);
+                far = sibling;
+                sibling = near;
+            }
+            // Case 4: Black sibling with a red far child, rotate sibling above parent
+            rotate(sibling, parent);
+            setRed(sibling, isRed(parent));
+            setRed(parent, false);
+            setRed(far, false);
+            return;
+        }
+        if (node != NIL) {
+            setRed(node, false); // A red node absorbs the missing black
+        }
+    }
+
+    /**
+     * Rotates child into the position of parent. When child is the left child of
+     * parent this is a right rotation, and otherwise a left rotation.
+     */
+    private void rotate(int child, int parent) {
+        int grandparent = parents[parent];
+        if (lefts[parent] == child) {
+            int inner = rights[child];
+            lefts[parent] = inner;
+            if (inner != NIL) {
+                parents[inner] = parent;
+            }
+            rights[child] = parent;
+        } else {
+            int inner = lefts[child];
+            rights[parent] = inner;
+            if (inner != NIL) {
+                parents[inner] = parent;
+            }
+            lefts[child] = parent;
+        }
+        parents[parent] = child;
+        replaceChild(grandparent, parent, child);
+        // parent is now below child, so it must be refreshed first
+        sizes[parent] = 1 + sizeOf(lefts[parent]) + sizeOf(rights[parent]);
+        sizes[child] = 1 + sizeOf(lefts[child]) + sizeOf(rights[child]);
+    }
+
+    /**
+     * Puts replacement in the position of node below parent, or at the root when
+     * parent is NIL.
+     */
+    private void replaceChild(int parent, int node, int replacement) {
+        if (parent == NIL) {
+            root = replacement;
+        } else if (lefts[parent] == node) {
+            lefts[parent] = replacement;
+        } else {
+            rights[parent] = replacement;
+        }
+        if (replacement != NIL) {
+            parents[replacement] = parent;
+        }
+    }
+
+    /**
+     * Finds the node storing data, looking through every node whose value compares
+     * equal to data for one whose value equals() data.
+     */
+    protected int findNode(T data) {
+        // Find the first node, in sorted order, that compares equal to data
+        int first = NIL;
+        int node = root;
+        while (node != NIL) {
+            int cmp = data.compareTo(value(node));
+            if (cmp <= 0) {
+                if (cmp == 0) {
+                    first = node;
+                }
+                node = lefts[node];
+            } else {
+                node = rights[node];
+            }
+        }
+
+        // Visit the equal values in sorted order through parent links
+        for (node = first; node != NIL && data.compareTo(value(node)) == 0; node = successor(node)) {
+            if (data.equals(values[node])) {
+                return node;
+            }
+        }
+        return NIL;
+    }
+
+    /**
+     * Returns the node that follows node in sorted order, or NIL for the last node.
+     */
+    protected int successor(int node) {
+        if (rights[node] != NIL) {
+            node = rights[node];
+            while (lefts[node] != NIL) {
+                node = lefts[node];
+            }
+            return node;
+        }
+        while (parents[node] != NIL && rights[parents[node]] == node) {
+            node = parents[node];
+        }
+        return parents[node];
+    }
+
+    /**
+     * Counts the values that are less than key (or less than or equal to key when
+     * inclusive is true) with a single descent from the root.
+     */
+    private int countBelow(Comparable<T> key, boolean inclusive) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null.");
+        }
+        int below = 0;
+        int node = root;
+        while (node != NIL) {
+            int cmp = key.compareTo(value(node));
+            if (cmp > 0 || (inclusive && cmp == 0)) {
+                below += sizeOf(lefts[node]) + 1; // node and its left subtree
+                node = rights[node];
+            } else {
+                node = lefts[node];
+            }
+        }
+        return below;
+    }
+
+    /**
+     * Builds a balanced subtree from the values between indices lo and hi (inclusive)
+     * of a sorted list, using the middle value as the root of each subtree.
+     * @return the index of the subtree's root, or NIL when lo is greater than hi
+     */
+    private int buildBalanced(List<T> sorted, int lo, int hi, int depth, int redDepth) {
+        if (lo > hi) {
+            return NIL;
+        }
+        int mid = (lo + hi) >>> 1;
+        int node = newNode(sorted.get(mid), depth == redDepth);
+        int left = buildBalanced(sorted, lo, mid - 1, depth + 1, redDepth);
+        int right = buildBalanced(sorted, mid + 1, hi, depth + 1, redDepth);
+        lefts[node] = left;
+        rights[node] = right;
+        if (left != NIL) {
+            parents[left] = node;
+        }
+        if (right != NIL) {
+            parents[right] = node;
+        }
+        sizes[node] = 1 + sizeOf(left) + sizeOf(right);
+        return node;
+    }
+
+    /**
+     * Stores a value in the next free slot, as a node without links.
+     * @return the index of the new node
+     */
+    protected int newNode(T data, boolean red) {
+        ensureCapacity(count + 1);
+        int node = count++;
+        values[node] = data;
+        lefts[node] = NIL;
+        rights[node] = NIL;
+        parents[node] = NIL;
+        sizes[node] = 1;
+        setRed(node, red);
+        return node;
+    }
+
+    /**
+     * Frees the slot of a node that was unlinked from the tree, by moving the node in
+     * the last slot into it.
+     */
+    private void release(int node) {
+        int last = --count;
+        if (node != last) {
+            moveSlot(last, node);
+            // Point the moved node's parent and children at its new slot
+            replaceChild(parents[last], last, node);
+            if (lefts[node] != NIL) {
+                parents[lefts[node]] = node;
+            }
+            if (rights[node] != NIL) {
+                parents[rights[node]] = node;
+            }
+        }
+        values[last] = null;
+        setRed(last, false);
+    }
+
+    /**
+     * Copies the links, size and color of the node in slot from, along with its value,
+     * into slot to.
+     */
+    private void moveSlot(int from, int to) {
+        copyValue(from, to);
+        lefts[to] = lefts[from];
+        rights[to] = rights[from];
+        parents[to] = parents[from];
+        sizes[to] = sizes[from];
+        setRed(to, isRed(from));
+    }
+
+    /**
+     * Copies the value of the node in slot from into slot to. Subclasses that store
+     * more per value override this to copy their own arrays too.
+     */
+    protected void copyValue(int from, int to) {
+        values[to] = values[from];
+    }
+
+    /**
+     * Grows every array, keeping the stored nodes, so that it can hold capacity nodes.
+     * Subclasses that store more per node override this to grow their own arrays too.
+     */
+    protected void ensureCapacity(int capacity) {
+        if (capacity <= values.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, values.length * 2);
+        values = Arrays.copyOf(values, newCapacity);
+        lefts = Arrays.copyOf(lefts, newCapacity);
+        rights = Arrays.copyOf(rights, newCapacity);
+        parents = Arrays.copyOf(parents, newCapacity);
+        sizes = Arrays.copyOf(sizes, newCapacity);
+        redBits = Arrays.copyOf(redBits, (newCapacity + 63) >>> 6);
+    }
+
+    @SuppressWarnings("unchecked") // values only ever holds values of type T
+    protected T value(int node) {
+        return (T) values[node];
+    }
+
+    protected int sizeOf(int node) {
+        return node == NIL ? 0 : sizes[node];
+    }
+
+    /**
+     * Returns whether node is red, treating NIL leaves as black.
+     */
+    protected boolean isRed(int node) {
+        return node != NIL && (redBits[node >>> 6] & (1L << node)) != 0;
+    }
+
+    protected void setRed(int node, boolean red) {
+        if (red) {
+            redBits[node >>> 6] |= 1L << node;
+        } else {
+            redBits[node >>> 6] &= ~(1L << node);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests of the array-backed red-black trees. They are kept out of ArrayRedBlackTree
+ * so that IntKeyRedBlackTree, which JUnit cannot create without its key function,
+ * does not inherit them.
+ */
+public class ArrayRedBlackTreeTests {
+
+    private static final Comparator<Song> ENERGY_COMPARATOR = Comparator.comparingInt(Song::getEnergy);
+
+    /**
+     * Checks that no red node has a red child, that subtree sizes and parent links are
+     * correct, and that every path from node to a leaf passes through the same number
+     * of black nodes.
+     * @return the number of black nodes on each path from node to a leaf
+     */
+    private static int checkProperties(ArrayRedBlackTree<?> tree, int node) {
+        if (node == ArrayRedBlackTree.NIL) {
+            return 1;
+        }
+        if (tree.isRed(node)) {
+            assertFalse(tree.isRed(tree.lefts[node]) || tree.isRed(tree.rights[node]), "Red node with a red child");
+        }
+        for (int child : new int[] {tree.lefts[node], tree.rights[node]}) {
+            if (child != ArrayRedBlackTree.NIL) {
+                assertEquals(node, tree.parents[child], "Wrong parent link");
+            }
+        }
+        int left = checkProperties(tree, tree.lefts[node]);
+        int right = checkProperties(tree, tree.rights[node]);
+        assertEquals(left, right, "Unequal black heights");
+        assertEquals(1 + tree.sizeOf(tree.lefts[node]) + tree.sizeOf(tree.rights[node]), tree.sizes[node]);
+        return left + (tree.isRed(node) ? 0 : 1);
+    }
+
+    /**
+     * Creates a song ordered by energy, which only carries a title and an energy.
+     */
+    private static Song song(String title, int energy) {
+        return new Song(title, "", "", 0, 0, energy, 0, 0, 0, ENERGY_COMPARATOR);
+    }
+
+    /**
+     * Test 1: Ensures random inserts, bulk inserts and removals, including duplicate
+     * values, keep the red-black properties and match a sorted list.
+     */
+    @Test
+    public void testMatchesSortedList() {
+        Random random = new Random(15);
+        ArrayRedBlackTree<Integer> tree = new ArrayRedBlackTree<>();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            int value = random.nextInt(300);
+            int operation = random.nextInt(10);
+            if (operation < 5) {
+                tree.insert(value);
+                expected.add(value);
+            } else if (operation < 6) {
+                tree.insertAll(List.of(value, value + 1));
+                expected.add(value);
+                expected.add(value + 1);
+            } else {
+                assertEquals(expected.remove((Integer) value), tree.remove(value));
+            }
+            assertFalse(tree.isRed(tree.root), "Root must be black");
+            assertEquals(tree.count, tree.sizeOf(tree.root)); // nodes stay packed
+            checkProperties(tree, tree.root);
+        }
+        expected.sort(null);
+
+        List<Integer> actual = new ArrayList<>();
+        tree.forEach(actual::add);
+        assertEquals(expected, actual);
+        assertEquals(expected.get(expected.size() / 3), tree.select(expected.size() / 3));
+        assertEquals(expected.indexOf(150), tree.rank(150));
+        assertEquals(expected.contains(42), tree.contains(42));
+    }
+
+    /**
+     * Test 2: Ensures iterators start and stop at the minimum and maximum values set.
+     */
+    @Test
+    public void testIterationWithMinMax() {
+        ArrayRedBlackTree<String> tree = new ArrayRedBlackTree<>();
+        for (String word : List.of("kiwi", "apple", "fig", "date", "banana", "cherry", "grape")) {
+            tree.insert(word);
+        }
+        tree.setIteratorMin("c");
+        tree.setIteratorMax("g");
+        List<String> words = new ArrayList<>();
+        tree.forEach(words::add);
+        assertEquals(List.of("cherry", "date", "fig"), words);
+        assertEquals(3, tree.countInRange("c", "g"));
+    }
+
+    /**
+     * Test 3: Ensures the int-key searches of IntKeyRedBlackTree (containsKey, the
+     * int countInRange and the key-range iterator) agree with the searches that
+     * compare songs, while songs with repeated energies are inserted and removed.
+     */
+    @Test
+    public void testIntKeysMatchComparables() {
+        Random random = new Random(16);
+        IntKeyRedBlackTree<Song> tree = new IntKeyRedBlackTree<>(Song::getEnergy);
+        List<Song> stored = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            int operation = random.nextInt(10);
+            if (operation < 6 || stored.isEmpty()) {
+                Song song = song("s" + i, random.nextInt(100));
+                tree.insert(song);
+                stored.add(song);
+            } else if (operation < 7) {
+                List<Song> batch = List.of(song("a" + i, random.nextInt(100)), song("b" + i, random.nextInt(100)));
+                tree.insertAll(batch);
+                stored.addAll(batch);
+            } else {
+                // removes the song itself, not just any song with the same energy
+                assertTrue(tree.remove(stored.remove(random.nextInt(stored.size()))));
+            }
+            checkProperties(tree, tree.root);
+        }
+
+        for (int energy = -1; energy <= 100; energy++) {
+            assertEquals(tree.contains(song("", energy)), tree.containsKey(energy), "containsKey " + energy);
+            int hi = energy + random.nextInt(20);
+            assertEquals(tree.countInRange(song("", energy), song("", hi)), tree.countInRange(energy, hi),
+                    "countInRange " + energy + " to " + hi);
+
+            tree.setIteratorMin(song("", energy));
+            tree.setIteratorMax(song("", hi));
+            List<Song> compared = new ArrayList<>();
+            tree.forEach(compared::add);
+            List<Song> keyed = new ArrayList<>();
+            tree.iterator(energy, hi).forEachRemaining(keyed::add);
+            assertEquals(compared, keyed, "iterator " + energy + " to " + hi);
+        }
+        assertEquals(0, tree.countInRange(50, 40));
+        Iterator<Song> empty = tree.iterator(50, 40);
+        assertFalse(empty.hasNext());
+
+        stored.sort(null);
+        tree.setIteratorMin(null);
+        tree.setIteratorMax(null);
+        List<Song> all = new ArrayList<>();
+        tree.forEach(all::add);
+        assertEquals(stored.size(), all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(stored.get(i).getEnergy(), all.get(i).getEnergy());
+        }
+    }
+}
@@ -0,0 +1,679 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * This class is a B+tree implementation of IterableSortedCollection. Values are kept
+ * in sorted arrays within leaf nodes, and the leaves are linked from left to right,
+ * so iterating over a range walks along consecutive array slots and only follows a
+ * pointer once per leaf. Inner nodes store the separators between their children
+ * along with the number of values below each child, which lets rank, select and
+ * countInRange answer with a single descent.
+ *
+ * Iterators use the same minimum and maximum semantics as IterableRedBlackTree, so
+ * the two can be used interchangeably by the Backend. Values that compare equal are
+ * kept in insertion order.
+ *
+ * @param <T> The type of data stored in the tree, must be comparable
+ */
+public class BPlusTree<T extends Comparable<T>> implements IterableSortedCollection<T> {
+
+    // A node's references to its values (or children) fill two 64-byte cache lines
+    // with compressed references, so searching a node stays within a few lines,
+    // while the tree stays shallow: three levels already hold 32^3 values.
+    private static final int LEAF_CAPACITY = 32;
+    private static final int FANOUT = 32;
+
+    /**
+     * A node of the tree, which knows the inner node above it.
+     */
+    private abstract static class Node {
+        protected Inner parent;
+    }
+
+    /**
+     * A leaf node, holding up to LEAF_CAPACITY values in sorted order.
+     */
+    private static final class Leaf extends Node {
+        // one spare slot lets a full leaf take an extra value just before it splits
+        private Object[] values = new Object[LEAF_CAPACITY + 1];
+        private int size = 0;
+        private Leaf next = null;
+    }
+
+    /**
+     * An inner node, holding up to FANOUT children. Every value in children[i] is
+     * less than or equal to keys[i], and every value in children[i + 1] is greater
+     * than or equal to keys[i]. counts[i] is the number of values below children[i].
+     */
+    private static final class Inner extends Node {
+        private Object[] keys = new Object[FANOUT];
+        private Node[] children = new Node[FANOUT + 1];
+        private int[] counts = new int[FANOUT + 1];
+        private int size = 0; // number of children
+
+        private int total() {
+            int total = 0;
+            for (int i = 0; i < size; i++) {
+                total += counts[i];
+            }
+            return total;
+        }
+    }
+
+    private Node root = new Leaf();
+    private Leaf first = (Leaf) root;
+    private int size = 0;
+
+    // Fields to store the minimum and maximum values for the iterator
+    private Comparable<T> min = null;
+    private Comparable<T> max = null;
+
+    /**
+     * Inserts a new data value into the tree, after any values that compare equal to it.
+     * @param data the new value being inserted
+     * @throws NullPointerException if data argument is null
+     */
+    @Override
+    public void insert(T data) throws NullPointerException {
+        if (data == null) {
+            throw new NullPointerException("Data cannot be null."); // Check for null input
+        }
+        // Descend to the leaf, counting the new value in every inner node on the way
+        Node node = root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            int child = searchKeys(inner, data, true);
+            inner.counts[child]++;
+            node = inner.children[child];
+        }
+        Leaf leaf = (Leaf) node;
+        int position = searchValues(leaf, data, true);
+        System.arraycopy(leaf.values, position, leaf.values, position + 1, leaf.size - position);
+        leaf.values[position] = data;
+        leaf.size++;
+        size++;
+
+        if (leaf.size > LEAF_CAPACITY) {
+            split(leaf);
+        }
+    }
+
+    /**
+     * Inserts many values into the tree at once. The values are sorted, merged with
+     * the values already stored, and the tree is rebuilt bottom up from full leaves,
+     * which takes linear time apart from the sort.
+     * @param values the new values being inserted
+     * @throws NullPointerException if values or any of its elements is null
+     */
+    @Override
+    public void insertAll(List<T> values) throws NullPointerException {
+        List<T> sorted = new ArrayList<>(values);
+        for (T data : sorted) {
+            if (data == null) {
+                throw new NullPointerException("Data cannot be null."); // Check for null input
+            }
+        }
+        sorted.sort(null);
+
+        // Merge with the values already stored, keeping them before equal new values
+        List<T> merged = new ArrayList<>(size + sorted.size());
+        Iterator<T> existing = new BPlusIterator(first, 0, null);
+        T current = existing.hasNext() ? existing.next() : null;
+        for (T data : sorted) {
+            while (current != null && data.compareTo(current) >= 0) {
+                merged.add(current);
+                current = existing.hasNext() ? existing.next() : null;
+            }
+            merged.add(data);
+        }
+        while (current != null) {
+            merged.add(current);
+            current = existing.hasNext() ? existing.next() : null;
+        }
+        build(merged);
+    }
+
+    /**
+     * Removes one occurrence of data from the tree. Among the values that compare
+     * equal to data, the one that equals() it is removed. Leaves are not merged when
+     * they become less than full, only removed once they are empty.
+     * @param data the value being removed
+     * @return true if a value was removed, false if data was not in the tree
+     * @throws NullPointerException if data argument is null
+     */
+    @Override
+    public boolean remove(T data) throws NullPointerException {
+        if (data == null) {
+            throw new NullPointerException("Data cannot be null."); // Check for null input
+        }
+        Leaf leaf = lowerBoundLeaf(data);
+        int position = searchValues(leaf, data, false);
+        while (leaf != null) {
+            if (position == leaf.size) {
+                leaf = leaf.next; // equal values may continue in the next leaf
+                position = 0;
+                continue;
+            }
+            T value = valueAt(leaf.values, position);
+            if (data.compareTo(value) != 0) {
+                return false;
+            }
+            if (data.equals(value)) {
+                removeAt(leaf, position);
+                return true;
+            }
+            position++;
+        }
+        return false;
+    }
+
+    /**
+     * Replaces a value of the tree with a new value.
+     * @param oldValue the value being replaced
+     * @param newValue the value stored in its place
+     * @return true if oldValue was replaced, false if it was not in the tree
+     * @throws NullPointerException if either argument is null
+     */
+    public boolean update(T oldValue, T newValue) throws NullPointerException {
+        if (newValue == null) {
+            throw new NullPointerException("Data cannot be null."); // Check for null input
+        }
+        if (!remove(oldValue)) {
+            return false;
+        }
+        insert(newValue);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Comparable<T> data) {
+        if (data == null) {
+            return false; // Null not allowed
+        }
+        Leaf leaf = lowerBoundLeaf(data);
+        int position = searchValues(leaf, data, false);
+        if (position == leaf.size) {
+            leaf = leaf.next;
+            position = 0;
+        }
+        return leaf != null && data.compareTo(valueAt(leaf.values, position)) == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        root = new Leaf();
+        first = (Leaf) root;
+        size = 0;
+    }
+
+    @Override
+    public int rank(Comparable<T> key) {
+        return countBelow(key, false);
+    }
+
+    @Override
+    public T select(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        Node node = root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            int child = 0;
+            while (index >= inner.counts[child]) {
+                index -= inner.counts[child++];
+            }
+            node = inner.children[child];
+        }
+        return valueAt(((Leaf) node).values, index);
+    }
+
+    @Override
+    public int countInRange(Comparable<T> lo, Comparable<T> hi) {
+        int atMostHi = (hi == null) ? size : countBelow(hi, true);
+        int belowLo = (lo == null) ? 0 : countBelow(lo, false);
+        return Math.max(0, atMostHi - belowLo);
+    }
+
+    /**
+     * Allows setting the start (minimum) value of the iterator. Every iterator created
+     * after this call uses this minimum, until it is set again.
+     * @param min the minimum for iterators created for this tree, or null for no minimum
+     */
+    @Override
+    public void setIteratorMin(Comparable<T> min) {
+        this.min = min;
+    }
+
+    /**
+     * Allows setting the stop (maximum) value of the iterator. Every iterator created
+     * after this call uses this maximum, until it is set again.
+     * @param max the maximum for iterators created for this tree, or null for no maximum
+     */
+    @Override
+    public void setIteratorMax(Comparable<T> max) {
+        this.max = max;
+    }
+
+    /**
+     * Returns an iterator over the values from the minimum to the maximum set for
+     * iterators, in sorted order. The iterator finds its first leaf with one descent,
+     * and then follows the links between leaves.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        if (min == null) {
+            return new BPlusIterator(first, 0, max);
+        }
+        Leaf leaf = lowerBoundLeaf(min);
+        return new BPlusIterator(leaf, searchValues(leaf, min, false), max);
+    }
+
+    /**
+     * Iterator that walks the values of the linked leaves, from a starting position
+     * until the first value above its maximum.
+     */
+    private class BPlusIterator implements Iterator<T> {
+        private Leaf leaf;
+        private int position;
+        private final Comparable<T> max;
+
+        private BPlusIterator(Leaf leaf, int position, Comparable<T> max) {
+            this.leaf = leaf;
+            this.position = position;
+            this.max = max;
+            skipEndOfLeaf();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return leaf != null && (max == null || max.compareTo(valueAt(leaf.values, position)) >= 0);
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more elements in the iterator");
+            }
+            T value = valueAt(leaf.values, position++);
+            skipEndOfLeaf();
+            return value;
+        }
+
+        private void skipEndOfLeaf() {
+            while (leaf != null && position == leaf.size) {
+                leaf = leaf.next;
+                position = 0;
+            }
+        }
+    }
+
+    /**
+     * Finds the leftmost leaf that may hold a value greater than or equal to key.
+     */
+    private Leaf lowerBoundLeaf(Comparable<T> key) {
+        Node node = root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            node = inner.children[searchKeys(inner, key, false)];
+        }
+        return (Leaf) node;
+    }
+
+    /**
+     * Counts the values that are less than key (or less than or equal to key when
+     * inclusive is true) with a single descent from the root.
+     */
+    private int countBelow(Comparable<T> key, boolean inclusive) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null.");
+        }
+        int count = 0;
+        Node node = root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            int child = searchKeys(inner, key, inclusive);
+            for (int i = 0; i < child; i++) {
+                count += inner.counts[i]; // every value left of child is below key
+            }
+            node = inner.children[child];
+        }
+        return count + searchValues((Leaf) node, key, inclusive);
+    }
+
+    /**
+     * Binary searches the separators of an inner node.
+     * @param inclusive whether separators equal to key are counted
+     * @return the number of separators less than key, or less than or equal to key
+     *         when inclusive is true, which is the index of the child to descend into
+     */
+    private int searchKeys(Inner inner, Comparable<T> key, boolean inclusive) {
+        return search(inner.keys, inner.size - 1, key, inclusive);
+    }
+
+    /**
+     * Binary searches the values of a leaf.
+     * @param inclusive whether values equal to key are counted
+     * @return the number of values less than key, or less than or equal to key when
+     *         inclusive is true
+     */
+    private int searchValues(Leaf leaf, Comparable<T> key, boolean inclusive) {
+        return search(leaf.values, leaf.size, key, inclusive);
+    }
+
+    private int search(Object[] sorted, int length, Comparable<T> key, boolean inclusive) {
+        int lo = 0;
+        int hi = length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = key.compareTo(valueAt(sorted, mid));
+            if (cmp > 0 || (inclusive && cmp == 0)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the value at index of the values of a leaf, or of the keys of an
+     * inner node.
+     */
+    @SuppressWarnings("unchecked") // these arrays only ever hold values of type T
+    private T valueAt(Object[] values, int index) {
+        return (T) values[index];
+    }
+
+    /**
+     * Splits an overfull leaf in two, and adds the new right half to its parent.
+     */
+    private void split(Leaf leaf) {
+        Leaf right = new Leaf();
+        int half = leaf.size / 2;
+        right.size = leaf.size - half;
+        System.arraycopy(leaf.values, half, right.values, 0, right.size);
+        Arrays.fill(leaf.values, half, leaf.size, null);
+        leaf.size = half;
+        right.next = leaf.next;
+        leaf.next = right;
+        addChild(leaf, right.values[0], right, leaf.size, right.size);
+    }
+
+    /**
+     * Splits an overfull inner node in two, and adds the new right half to its parent.
+     * The separator between the halves moves up into the parent.
+     */
+    private void split(Inner inner) {
+        Inner right = new Inner();
+        int half = inner.size / 2;
+        right.size = inner.size - half;
+        Object separator = inner.keys[half - 1];
+        System.arraycopy(inner.children, half, right.children, 0, right.size);
+        System.arraycopy(inner.counts, half, right.counts, 0, right.size);
+        System.arraycopy(inner.keys, half, right.keys, 0, right.size - 1);
+        Arrays.fill(inner.children, half, inner.size, null);
+        Arrays.fill(inner.keys, half - 1, inner.size - 1, null);
+        inner.size = half;
+        for (int i = 0; i < right.size; i++) {
+            right.children[i].parent = right;
+        }
+        addChild(inner, separator, right, inner.total(), right.total());
+    }
+
+    /**
+     * Adds right to the parent of left, directly after left, splitting the parent
+     * when it becomes overfull. A new root is created when left is the root.
+     * @param separator the separator between the values of left and right
+     * @param leftCount the number of values below left
+     * @param rightCount the number of values below right
+     */
+    private void addChild(Node left, Object separator, Node right, int leftCount, int rightCount) {
+        Inner parent = left.parent;
+        if (parent == null) {
+            parent = new Inner();
+            parent.children[0] = left;
+            parent.size = 1;
+            left.parent = parent;
+            root = parent;
+        }
+        int index = indexOf(parent, left);
+        System.arraycopy(parent.children, index + 1, parent.children, index + 2, parent.size - index - 1);
+        System.arraycopy(parent.counts, index + 1, parent.counts, index + 2, parent.size - index - 1);
+        System.arraycopy(parent.keys, index, parent.keys, index + 1, parent.size - index - 1);
+        parent.children[index + 1] = right;
+        parent.counts[index] = leftCount;
+        parent.counts[index + 1] = rightCount;
+        parent.keys[index] = separator;
+        parent.size++;
+        right.parent = parent;
+
+        if (parent.size > FANOUT) {
+            split(parent);
+        }
+    }
+
+    /**
+     * Removes the value at a position of a leaf, updating the counts above it.
+     * An empty leaf is unlinked and removed from its parent.
+     */
+    private void removeAt(Leaf leaf, int position) {
+        System.arraycopy(leaf.values, position + 1, leaf.values, position, leaf.size - position - 1);
+        leaf.values[--leaf.size] = null;
+        size--;
+        for (Node node = leaf; node.parent != null; node = node.parent) {
+            node.parent.counts[indexOf(node.parent, node)]--;
+        }
+        if (leaf.size == 0 && leaf != root) {
+            unlink(leaf);
+            removeChild(leaf);
+        }
+    }
+
+    /**
+     * Removes an empty node from its parent, along with a separator next to it.
+     * Parents left without children are removed as well, and a root left with a
+     * single child is replaced by that child.
+     */
+    private void removeChild(Node node) {
+        Inner parent = node.parent;
+        int index = indexOf(parent, node);
+        int key = Math.max(0, index - 1);
+        System.arraycopy(parent.children, index + 1, parent.children, index, parent.size - index - 1);
+        System.arraycopy(parent.counts, index + 1, parent.counts, index, parent.size - index - 1);
+        System.arraycopy(parent.keys, key + 1, parent.keys, key, Math.max(0, parent.size - key - 2));
+        parent.size--;
+        parent.children[parent.size] = null;
+        if (parent.size > 0) {
+            parent.keys[parent.size - 1] = null;
+        }
+
+        if (parent.size == 0 && parent != root) {
+            removeChild(parent);
+        } else if (parent == root) {
+            while (root instanceof Inner && ((Inner) root).size == 1) {
+                root = ((Inner) root).children[0];
+                root.parent = null;
+            }
+            if (root instanceof Inner && ((Inner) root).size == 0) {
+                clear(); // only reachable when the last value was removed
+            }
+        }
+    }
+
+    /**
+     * Removes an empty leaf from the linked list of leaves.
+     */
+    private void unlink(Leaf leaf) {
+        if (first == leaf) {
+            first = leaf.next;
+            return;
+        }
+        // The leaf before this one is the last leaf of the nearest subtree to its left
+        Node node = leaf;
+        while (indexOf(node.parent, node) == 0) {
+            node = node.parent;
+        }
+        node = node.parent.children[indexOf(node.parent, node) - 1];
+        while (node instanceof Inner) {
+            node = ((Inner) node).children[((Inner) node).size - 1];
+        }
+        ((Leaf) node).next = leaf.next;
+    }
+
+    private static int indexOf(Inner parent, Node child) {
+        for (int i = 0; i < parent.size; i++) {
+            if (parent.children[i] == child) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Node is not a child of its parent.");
+    }
+
+    /**
+     * Rebuilds the tree from a sorted list of values, with every leaf and inner node
+     * full apart from the last one of each level.
+     */
+    private void build(List<T> sorted) {
+        clear();
+        if (sorted.isEmpty()) {
+            return;
+        }
+        List<Node> level = new ArrayList<>();
+        List<Object> lowest = new ArrayList<>(); // smallest value below each node
+        List<Integer> counts = new ArrayList<>();
+        Leaf previous = null;
+        for (int start = 0; start < sorted.size(); start += LEAF_CAPACITY) {
+            Leaf leaf = new Leaf();
+            leaf.size = Math.min(LEAF_CAPACITY, sorted.size() - start);
+            for (int i = 0; i < leaf.size; i++) {
+                leaf.values[i] = sorted.get(start + i);
+            }
+            if (previous == null) {
+                first = leaf;
+            } else {
+                previous.next = leaf;
+            }
+            previous = leaf;
+            level.add(leaf);
+            lowest.add(leaf.values[0]);
+            counts.add(leaf.size);
+        }
+
+        while (level.size() > 1) {
+            List<Node> parents = new ArrayList<>();
+            List<Object> parentLowest = new ArrayList<>();
+            List<Integer> parentCounts = new ArrayList<>();
+            for (int start = 0; start < level.size(); start += FANOUT) {
+                Inner inner = new Inner();
+                inner.size = Math.min(FANOUT, level.size() - start);
+                for (int i = 0; i < inner.size; i++) {
+                    inner.children[i] = level.get(start + i);
+                    inner.children[i].parent = inner;
+                    inner.counts[i] = counts.get(start + i);
+                    if (i > 0) {
+                        inner.keys[i - 1] = lowest.get(start + i);
+                    }
+                }
+                parents.add(inner);
+                parentLowest.add(lowest.get(start));
+                parentCounts.add(inner.total());
+            }
+            level = parents;
+            lowest = parentLowest;
+            counts = parentCounts;
+        }
+        root = level.get(0);
+        size = sorted.size();
+    }
+
+    // Test Cases
+
+    /**
+     * Test 1: Ensures random inserts, bulk inserts and removals, including many
+     * duplicate values, match a sorted list, and that order statistics agree with it.
+     */
+    @Test
+    public void testMatchesSortedList() {
+        Random random = new Random(14);
+        BPlusTree<Integer> tree = new BPlusTree<>();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            int value = random.nextInt(500);
+            int operation = random.nextInt(100);
+            if (operation < 60) {
+                tree.insert(value);
+                expected.add(value);
+            } else if (operation < 61) {
+                List<Integer> batch = List.of(value, value + 1, value + 2);
+                tree.insertAll(batch);
+                expected.addAll(batch);
+            } else {
+                assertEquals(expected.remove((Integer) value), tree.remove(value));
+            }
+        }
+        expected.sort(null);
+
+        List<Integer> actual = new ArrayList<>();
+        tree.forEach(actual::add);
+        assertEquals(expected, actual);
+        assertEquals(expected.size(), tree.size());
+        for (int value = 0; value < 505; value += 7) {
+            assertEquals(expected.contains(value), tree.contains(value));
+            int key = value;
+            assertEquals((int) expected.stream().filter(v -> v < key).count(), tree.rank(key));
+        }
+        for (int index = 0; index < expected.size(); index += 97) {
+            assertEquals(expected.get(index), tree.select(index));
+        }
+
+        // Removing every value leaves an empty tree that can be used again
+        for (int value : expected) {
+            assertTrue(tree.remove(value));
+        }
+        assertTrue(tree.isEmpty());
+        assertFalse(tree.iterator().hasNext());
+        tree.insert(3);
+        assertEquals(3, tree.select(0));
+    }
+
+    /**
+     * Test 2: Ensures iterators start and stop at the minimum and maximum values set,
+     * including when equal values span several leaves.
+     */
+    @Test
+    public void testIterationWithMinMax() {
+        BPlusTree<Integer> tree = new BPlusTree<>();
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i % 10); // ten copies of each digit, spread over several leaves
+        }
+        tree.setIteratorMin(3);
+        tree.setIteratorMax(4);
+        List<Integer> values = new ArrayList<>();
+        tree.forEach(values::add);
+        assertEquals(20, values.size());
+        assertEquals(3, values.get(0));
+        assertEquals(4, values.get(19));
+        assertEquals(20, tree.countInRange(3, 4));
+
+        tree.setIteratorMin(10);
+        tree.setIteratorMax(null);
+        assertFalse(tree.iterator().hasNext());
+    }
+}
@@ -28,9 +28,22 @@ public class BSTRotation<T extends Comparable<T>> extends BinarySearchTree<T> {
 			} else {// Invalid relationship
 				throw new IllegalArgumentException("Child is not a direct child of parent.");
 			}
+			// parent is now below child, so it must be refreshed first
+			updateAugmentation(parent);
+			updateAugmentation(child);
 		}
 	}
 
+	/**
+	 * Hook called on each node whose children changed during a rotation, from the
+	 * bottom up. Subclasses that store per-subtree information in their nodes
+	 * override this to recompute it. The plain BSTRotation stores none.
+	 *
+	 * @param node the node whose children were changed
+	 */
+	protected void updateAugmentation(BinaryTreeNode<T> node) {
+	}
+
 	/**
 	 * Private helper method, leftRotation, performs a left rotation on the BST
 	 * 
@@ -1,18 +1,55 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
 
 public class Backend implements BackendInterface {
+    // Orders songs by energy; shared by every song loaded and by the range probes
+    private static final Comparator<Song> ENERGY_COMPARATOR = Comparator.comparingInt(Song::getEnergy);
+
+    // Batches smaller than the tree divided by this are inserted one song at a time
+    private static final int SMALL_BATCH_RATIO = 32;
+
     private IterableSortedCollection<Song> tree;
     private Integer lowEnergy = null;
     private Integer highEnergy = null;
     private Integer danceabilityThreshold = null;
+    private int loadParallelism = 1;
+    // Shared artist and genre strings, and their codes, of every song loaded
+    private final StringDictionary dictionary;
+
+    // Results of recent queries, dropped whenever new songs are loaded
+    private int queryCacheCapacity = 128;
+    private final Map<QueryKey, List<String>> queryCache =
+            new LinkedHashMap<QueryKey, List<String>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<QueryKey, List<String>> eldest) {
+                    return size() > queryCacheCapacity;
+                }
+            };
+    private long cacheHits = 0;
+    private long cacheMisses = 0;
+
+    // Follows a growing file, and the songs it read that are not in the tree yet
+    private CSVFollower follower = null;
+    private final Queue<List<Song>> followedSongs = new ConcurrentLinkedQueue<>();
+    // Rows loaded and rejected by the last readData or follow
+    private LoadReport loadReport = new LoadReport();
+    // Work done by each stage of the last pipelined readData
+    private List<IngestPipeline.StageCounters> ingestCounters = List.of();
 
     public Backend(IterableSortedCollection<Song> tree) {
         this.tree = tree;
+        // A columnar store encodes its columns with the dictionary songs are loaded with
+        this.dictionary = (tree instanceof ColumnarSongStore)
+                ? ((ColumnarSongStore) tree).getDictionary() : new StringDictionary();
     }
 
     /**
@@ -26,130 +63,295 @@ public class Backend implements BackendInterface {
      * you create.  This will be used to store these songs in order within your
      * tree, and to retrieve them by energy range in the getRange method.
      *
+     * Rows that cannot be parsed are skipped, and are listed by getLoadReport.
+     * A gzip-compressed file is decompressed while it is parsed, on a thread of
+     * its own, without writing the decompressed file to disk.
+     *
      * @param filename is the name of the csv file to load data from
      * @throws IOException when there is trouble finding/reading file
      */
     @Override
     public void readData(String filename) throws IOException {
-        BufferedReader reader = null;
-        String line = "";
+        List<Song> songs;
+        LoadReport report = new LoadReport();
+        ingestCounters = List.of();
+        if (CatalogSnapshot.isSnapshot(filename)) {
+            songs = new CatalogSnapshot(dictionary).read(filename, ENERGY_COMPARATOR);
+            report.addLoaded(songs.size());
+        } else if (loadParallelism > 1) {
+            // The pipeline inserts songs into the tree while it is still parsing
+            IngestPipeline pipeline = new IngestPipeline(loadParallelism, dictionary);
+            loadReport = report;
+            ingestCounters = pipeline.getCounters();
+            try {
+                // the pipeline sizes its batches to keep rebuilds cheap
+                pipeline.load(filename, ENERGY_COMPARATOR, report, tree::insertAll);
+            } finally {
+                queryCache.clear(); // cached results do not include the new songs
+            }
+            return;
+        } else if (GzipCSVReader.isGzip(filename)) {
+            songs = new GzipCSVReader(dictionary).read(filename, ENERGY_COMPARATOR, report);
+        } else {
+            songs = new MappedCSVReader(dictionary).read(filename, ENERGY_COMPARATOR, report);
+        }
+        loadReport = report;
 
-        try {
-            // Initialize the BufferedReader to read the file
-            reader = new BufferedReader(new FileReader(filename));
+        // Insert every song that was parsed into the tree
+        insertSongs(songs);
+        queryCache.clear(); // cached results do not include the new songs
+    }
 
-            // Read the header line to understand the column order
-            String header = reader.readLine();
-            if (header == null) {
-                throw new IOException("Empty CSV file or missing header line.");
-            }
-            String[] headers = header.split(",");
-
-            // Identify column indices for required fields
-            int titleIndex = -1, artistIndex = -1, genreIndex = -1, yearIndex = -1, bpmIndex = -1,
-                    danceabilityIndex = -1, livenessIndex = -1, loudnessIndex = -1, energyIndex = -1;
-            for (int i = 0; i < headers.length; i++) {
-                switch (headers[i].trim().toLowerCase()) {
-                    case "title":
-                        titleIndex = i;
-                        break;
-                    case "artist":
-                        artistIndex = i;
-                        break;
-                    case "top genre":
-                        genreIndex = i;
-                        break;
-                    case "year":
-                        yearIndex = i;
-                        break;
-                    case "bpm":
-                        bpmIndex = i;
-                        break;
-                    case "nrgy":
-                        energyIndex = i;
-                        break;
-                    case "dnce":
-                        danceabilityIndex = i;
-                        break;
-                    case "db":
-                        loudnessIndex = i;
-                        break;
-                    case "live":
-                        livenessIndex = i;
-                        break;
-                }
-            }
+    /**
+     * Follows a .csv file that keeps growing, or a directory that .csv files are
+     * dropped into, instead of reading it once with readData. Every row already
+     * there is loaded right away. Rows added later are read by a background
+     * thread as soon as they are written, and are inserted into the tree by the
+     * next query, so the tree is only ever changed by the thread using this
+     * backend. Each row is only loaded once.
+     *
+     * @param filename is the name of the .csv file or directory to follow
+     * @throws IOException when there is trouble reading or watching the file
+     */
+    public void follow(String filename) throws IOException {
+        stopFollowing();
+        follower = new CSVFollower(filename, ENERGY_COMPARATOR, dictionary);
+        loadReport = follower.getReport();
+        insertSongs(follower.readNew());
+        queryCache.clear(); // cached results do not include the new songs
+        follower.start(followedSongs::add);
+    }
 
-            // Validate that all required indices are found
-            if (titleIndex == -1 || artistIndex == -1 || genreIndex == -1 || yearIndex == -1 || bpmIndex == -1 || danceabilityIndex == -1 || livenessIndex == -1 || loudnessIndex == -1|| energyIndex == -1) {
-                throw new IOException("Missing required columns in the CSV header.");
-            }
+    /**
+     * Stops following the file passed to follow. Songs that were read already are
+     * still inserted by the next query.
+     *
+     * @throws IOException when there is trouble closing the follower
+     */
+    public void stopFollowing() throws IOException {
+        if (follower != null) {
+            follower.close();
+            follower = null;
+        }
+    }
 
-            // Read each line of the file
-            while ((line = reader.readLine()) != null) {
-                String[] cols = parseCSVLine(line);
+    /**
+     * Inserts the songs read by the follower since the last query into the tree.
+     */
+    private void insertFollowedSongs() {
+        List<Song> songs = followedSongs.poll();
+        if (songs == null) {
+            return;
+        }
+        while (songs != null) {
+            insertSongs(songs);
+            songs = followedSongs.poll();
+        }
+        queryCache.clear(); // cached results do not include the new songs
+    }
 
-                // Extract values using the identified indices
-                String title = cols[titleIndex];
-                String artist = cols[artistIndex];
-                String genre = cols[genreIndex];
-                int year = Integer.parseInt(cols[yearIndex]);
-                int energy = Integer.parseInt(cols[energyIndex]);
-                int bpm = Integer.parseInt(cols[bpmIndex]);
-                int danceability = Integer.parseInt(cols[danceabilityIndex]);
-                int loudness = Integer.parseInt(cols[loudnessIndex]);
-                int liveness = Integer.parseInt(cols[livenessIndex]);
+    /**
+     * Writes every song in the tree to a binary snapshot file, in energy order.
+     * Passing that file to readData later loads the same songs without parsing
+     * any text, which is much faster than reading the original .csv file.
+     *
+     * @param filename is the name of the snapshot file to write
+     * @throws IOException when there is trouble writing the file
+     */
+    public void writeSnapshot(String filename) throws IOException {
+        new CatalogSnapshot(dictionary).write(filename, tree, tree.size());
+    }
 
+    /**
+     * Returns the report of the last readData or follow: how many rows were loaded,
+     * how many were skipped because they could not be parsed, and the first few
+     * of the skipped rows. A followed file's report keeps growing as rows are added.
+     *
+     * @return the report of the last load
+     */
+    public LoadReport getLoadReport() {
+        return loadReport;
+    }
 
-                // Create a comparator for sorting songs (e.g., by energy)
-                Comparator<Song> songComparator = Comparator.comparingInt(Song::getEnergy);
+    /**
+     * Returns the dictionary that encodes the artist and genre of every song this
+     * backend loads. Songs with the same artist, or genre, share one String and
+     * have the same code, so they can be matched by comparing codes.
+     *
+     * @return the dictionary of artists and genres
+     */
+    public StringDictionary getDictionary() {
+        return dictionary;
+    }
 
-                // Create a Song object
-                Song song = new Song(title, artist, genre, year, bpm, energy, danceability, loudness, liveness, songComparator);
+    /**
+     * Returns the counters of the reader, parser and writer stages of the last
+     * readData, which show the stage that limited it. Only loads with a
+     * parallelism above one run as a pipeline; for others the list is empty.
+     *
+     * @return the counters of each stage of the last load
+     */
+    public List<IngestPipeline.StageCounters> getIngestCounters() {
+        return ingestCounters;
+    }
 
-                // Insert the song into the tree
-                tree.insert(song);
+    /**
+     * Sets how many threads readData uses to parse a file. With a parallelism of
+     * one (the default), the file is memory-mapped and parsed on the calling
+     * thread. With more, the file is read by an IngestPipeline: one thread reads
+     * it, that many threads parse it, and the calling thread inserts the songs
+     * into the tree, all at the same time.
+     *
+     * @param parallelism the number of threads used to parse files
+     * @throws IllegalArgumentException when parallelism is less than one
+     */
+    public void setLoadParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1.");
+        }
+        this.loadParallelism = parallelism;
+    }
 
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            if (reader != null) {
-                reader.close();
+    /**
+     * Removes a song from the tree, without reloading the rest of the catalog.
+     * The song is found by seeking to its energy value, so this costs a single
+     * logarithmic removal on the red-black trees.
+     *
+     * @param title  the title of the song to remove
+     * @param energy the energy value the song is stored under
+     * @return true if the song was found and removed, false otherwise
+     */
+    public boolean removeSong(String title, int energy) {
+        Song song = findSong(title, energy);
+        if (song == null || !tree.remove(song)) {
+            return false;
+        }
+        queryCache.clear(); // cached results may include the removed song
+        return true;
+    }
+
+    /**
+     * Corrects the energy value of a song. The song is removed from the tree and
+     * a copy with the new energy value is inserted where that value belongs.
+     *
+     * @param title     the title of the song to update
+     * @param oldEnergy the energy value the song is currently stored under
+     * @param newEnergy the corrected energy value
+     * @return true if the song was found and updated, false otherwise
+     */
+    public boolean updateEnergy(String title, int oldEnergy, int newEnergy) {
+        Song song = findSong(title, oldEnergy);
+        if (song == null || !tree.remove(song)) {
+            return false;
+        }
+        if (song.getArtistCode() >= 0 && song.getGenreCode() >= 0) {
+            tree.insert(new Song(song.getTitle(), song.getArtistCode(), song.getGenreCode(), dictionary,
+                    song.getYear(), song.getBPM(), newEnergy, song.getDanceability(), song.getLoudness(),
+                    song.getLiveness(), ENERGY_COMPARATOR));
+        } else {
+            tree.insert(new Song(song.getTitle(), song.getArtist(), song.getGenres(), song.getYear(),
+                    song.getBPM(), newEnergy, song.getDanceability(), song.getLoudness(),
+                    song.getLiveness(), ENERGY_COMPARATOR));
+        }
+        queryCache.clear(); // cached results may include the song under its old energy
+        return true;
+    }
+
+    /**
+     * Finds a loaded song by its title among the songs with the given energy.
+     *
+     * @param title  the title of the song
+     * @param energy the energy value of the song
+     * @return the first such song, or null when there is none
+     */
+    private Song findSong(String title, int energy) {
+        insertFollowedSongs();
+        Song probe = energyProbe(energy);
+        tree.setIteratorMin(probe);
+        tree.setIteratorMax(probe);
+        Iterator<Song> iterator = tree.iterator();
+        tree.setIteratorMin(null);
+        tree.setIteratorMax(null);
+        while (iterator.hasNext()) {
+            Song song = iterator.next();
+            if (song.getTitle().equals(title)) {
+                return song;
             }
         }
+        return null;
     }
 
     /**
-     * Parses a single line of a CSV file into an array of strings.
-     * This method handles fields enclosed in double quotes and fields
-     * containing commas.
+     * Inserts the parsed songs into the tree. A red-black tree, whether made of
+     * nodes or of arrays, is rebuilt from the sorted songs in a single pass
+     * (under a single write lock for a concurrent tree, and as a single new
+     * version for a persistent tree), a B+tree is rebuilt from full leaves, a
+     * bucket tree adds one bucket per new energy value, and a columnar store
+     * merges them into its columns in place. Other trees get one insert per song,
+     * and so do songs that are few compared to the songs already stored, except
+     * in a columnar store, where a merge only moves the rows after the first new
+     * song, once, and one insert per song would move them once per song.
      *
-     * @param line the CSV line to parse
-     * @return an array of strings representing the fields in the CSV line
+     * @param songs the songs to insert
      */
-    private String[] parseCSVLine(String line) {
-        List<String> result = new ArrayList<>();
-        StringBuilder currentField = new StringBuilder();
-        // Set the initial state of the quotes to be false
-        boolean inQuotes = false;
-
-        for (char c : line.toCharArray()) {
-            if (c == '"') {
-                inQuotes = !inQuotes; // Toggle quotes
-            } else if (c == ',' && !inQuotes) {
-                // Split on comma if not inside quotes
-                result.add(currentField.toString().trim());
-                currentField = new StringBuilder();
-            } else {
-                currentField.append(c);
+    private void insertSongs(List<Song> songs) {
+        if (songs.size() * SMALL_BATCH_RATIO < tree.size() && !(tree instanceof ColumnarSongStore)) {
+            // Rebuilding would copy every song already stored, so a few new songs
+            // are cheaper to insert one at a time
+            for (Song song : songs) {
+                tree.insert(song);
             }
+        } else {
+            tree.insertAll(songs);
         }
+    }
 
-        // Add the last field
-        result.add(currentField.toString().trim());
+    /**
+     * Creates a probe song that only carries an energy value. Probes compare
+     * against loaded songs through the energy comparator, so they can be used
+     * as iterator bounds on the tree.
+     *
+     * @param energy the energy value of the probe
+     * @return a song usable as a bound for setIteratorMin/setIteratorMax
+     */
+    private Song energyProbe(int energy) {
+        return new Song("", "", "", 0, 0, energy, 0, 0, 0, ENERGY_COMPARATOR);
+    }
 
-        return result.toArray(new String[0]);
+    /**
+     * Scans the columns of a columnar store for the songs within the current
+     * energy range that pass the current danceability filter.
+     *
+     * @param store the columnar store to scan
+     * @return the indices of the matching rows, in energy order
+     */
+    private int[] columnScan(ColumnarSongStore store) {
+        return store.filter(lowEnergy == null ? Integer.MIN_VALUE : lowEnergy,
+                highEnergy == null ? Integer.MAX_VALUE : highEnergy,
+                danceabilityThreshold == null ? Integer.MIN_VALUE : danceabilityThreshold);
+    }
+
+    /**
+     * Returns an iterator over the songs within the current energy range. The
+     * range is pushed down into the tree as iterator bounds, so only the nodes
+     * on the search path and the songs inside the range are visited. The
+     * bounds are cleared again once the iterator has been created.
+     *
+     * @return iterator over songs from lowEnergy to highEnergy, in energy order
+     */
+    private Iterator<Song> rangeIterator() {
+        if (tree instanceof IntKeyRedBlackTree) {
+            // int-keyed trees take the energy bounds directly, without probe songs
+            return ((IntKeyRedBlackTree<Song>) tree).iterator(
+                    lowEnergy == null ? Integer.MIN_VALUE : lowEnergy,
+                    highEnergy == null ? Integer.MAX_VALUE : highEnergy);
+        }
+        tree.setIteratorMin(lowEnergy == null ? null : energyProbe(lowEnergy));
+        tree.setIteratorMax(highEnergy == null ? null : energyProbe(highEnergy));
+        Iterator<Song> iterator = tree.iterator();
+        tree.setIteratorMin(null);
+        tree.setIteratorMax(null);
+        return iterator;
     }
 
 
@@ -175,24 +377,50 @@ public class Backend implements BackendInterface {
      */
     @Override
     public List<String> getRange(Integer low, Integer high) {
-        lowEnergy = low;;
-        highEnergy = high;
+        return getRange(low, high, Integer.MAX_VALUE);
+    }
 
-        List<String> result = new ArrayList<>();
+    /**
+     * Retrieves at most maxCount song titles, in the same way as
+     * getRange(low, high).  Iteration stops as soon as maxCount titles have
+     * been found, so only the first songs of the range are visited.
+     *
+     * @param low      is the minimum energy of songs in the returned list
+     * @param high     is the maximum energy of songs in the returned list
+     * @param maxCount is the maximum number of titles to return
+     * @return List of titles for the first maxCount songs from low to high
+     * that pass any set filter, or an empty list when no such songs can be found
+     */
+    @Override
+    public List<String> getRange(Integer low, Integer high, int maxCount) {
+        lowEnergy = low;
+        highEnergy = high;
+        return cachedQuery(QueryKind.RANGE, maxCount, () -> rangeTitles(maxCount));
+    }
 
-        // Traverse the tree using the iterator
-        for (Song song : tree) {
-            int energy = song.getEnergy();
+    /**
+     * Collects the titles of the first maxCount songs within the current energy
+     * range that pass the current danceability filter.
+     *
+     * @param maxCount is the maximum number of titles to return
+     * @return the titles in energy order
+     */
+    private List<String> rangeTitles(int maxCount) {
+        // A columnar store scans its energy and danceability columns instead
+        if (tree instanceof ColumnarSongStore) {
+            ColumnarSongStore store = (ColumnarSongStore) tree;
+            return store.titles(columnScan(store), maxCount);
+        }
 
-            // Check energy range
-            boolean withinLow = (low == null || energy >= low);
-            boolean withinHigh = (high == null || energy <= high);
+        List<String> result = new ArrayList<>();
 
-            if (withinLow && withinHigh) {
-                // Check if the danceability filter is set
-                if (danceabilityThreshold == null || song.getDanceability() > danceabilityThreshold) {
-                    result.add(song.getTitle());
-                }
+        // Seek directly to the songs within the energy range
+        Iterator<Song> songs = rangeIterator();
+        while (result.size() < maxCount && songs.hasNext()) {
+            Song song = songs.next();
+            // Check if the danceability filter is set
+            if (danceabilityThreshold == null || song.getDanceability() > danceabilityThreshold) {
+                result.add(song.getTitle());
             }
         }
 
@@ -229,26 +457,8 @@ public class Backend implements BackendInterface {
         // Update the danceability threshold
         danceabilityThreshold = threshold;
 
-        // Traverse the tree and apply the filters
-        for (Song song : tree) {
-            int energy = song.getEnergy();
-            int danceability = song.getDanceability();
-
-            // Check energy range
-            boolean withinLow = (lowEnergy == null || energy >= lowEnergy);
-            boolean withinHigh = (highEnergy == null || energy <= highEnergy);
-
-            // Check danceability if meets threshold
-            boolean meetsThreshold = danceability > danceabilityThreshold;
-
-            // Add the song title if it meets all criteria
-            if (withinLow && withinHigh && meetsThreshold) {
-                result.add(song.getTitle());
-            }
-        }
-
-        // Return string list of song titles
-        return result;
+        // Return string list of song titles within the energy range that meet the threshold
+        return cachedQuery(QueryKind.RANGE, Integer.MAX_VALUE, () -> rangeTitles(Integer.MAX_VALUE));
     }
 
     /**
@@ -265,23 +475,43 @@ public class Backend implements BackendInterface {
      */
     @Override
     public List<String> fiveMost() {
-        List<Song> validSongs = new ArrayList<>();
-        List<String> result = new ArrayList<>();
+        return cachedQuery(QueryKind.MOST_RECENT, 5, this::mostRecentTitles);
+    }
 
-        // Traverse the tree to collect songs within the energy range and danceability filter
-        for (Song song : tree) {
-            int energy = song.getEnergy();
-            int danceability = song.getDanceability();
+    /**
+     * Finds the titles of the five most recent songs within the current energy
+     * range that pass the current danceability filter.
+     *
+     * @return up to five titles, most recent first
+     */
+    private List<String> mostRecentTitles() {
+        List<String> result = new ArrayList<>();
 
-            // Check energy range from getRange
-            boolean withinLow = (lowEnergy == null || energy >= lowEnergy);
-            boolean withinHigh = (highEnergy == null || energy <= highEnergy);
+        // A tree that tracks the most recent year of each subtree can find the
+        // five songs directly, without collecting and sorting the whole range
+        if (tree instanceof SongRedBlackTree) {
+            List<Song> recent = ((SongRedBlackTree) tree).mostRecent(5,
+                    lowEnergy == null ? null : energyProbe(lowEnergy),
+                    highEnergy == null ? null : energyProbe(highEnergy),
+                    song -> danceabilityThreshold == null || song.getDanceability() > danceabilityThreshold);
+            for (Song song : recent) {
+                result.add(song.getTitle());
+            }
+            return result;
+        }
+        if (tree instanceof ColumnarSongStore) {
+            ColumnarSongStore store = (ColumnarSongStore) tree;
+            return store.mostRecent(columnScan(store), 5);
+        }
 
-            // Check danceability filter from filterSongs
-            boolean meetsDanceability = (danceabilityThreshold == null || danceability > danceabilityThreshold);
+        // Seek to the songs within the energy range and apply the danceability filter
+        List<Song> validSongs = new ArrayList<>();
+        Iterator<Song> songs = rangeIterator();
+        while (songs.hasNext()) {
+            Song song = songs.next();
 
-            // Add song to the valid list if it meets all criteria
-            if (withinLow && withinHigh && meetsDanceability) {
+            // Add song to the valid list if it meets the danceability filter
+            if (danceabilityThreshold == null || song.getDanceability() > danceabilityThreshold) {
                 validSongs.add(song);
             }
         }
@@ -298,6 +528,98 @@ public class Backend implements BackendInterface {
         return result;
     }
 
-}
+    /**
+     * Returns the result of a query from the cache when the same query was run
+     * with the same energy range and danceability filter since the last load,
+     * and otherwise runs the query and caches its result. The least recently
+     * used result is dropped once the cache is full. Songs read from a followed
+     * file are inserted first, so that every query sees them.
+     *
+     * @param kind     the kind of query being run
+     * @param maxCount the maximum number of titles the query returns
+     * @param query    runs the query when its result is not cached
+     * @return a new list holding the titles found by the query
+     */
+    private List<String> cachedQuery(QueryKind kind, int maxCount, Supplier<List<String>> query) {
+        insertFollowedSongs();
+        QueryKey key = new QueryKey(kind, lowEnergy, highEnergy, danceabilityThreshold, maxCount);
+        List<String> titles = queryCache.get(key);
+        if (titles != null) {
+            cacheHits++;
+        } else {
+            cacheMisses++;
+            titles = query.get();
+            if (queryCacheCapacity > 0) {
+                queryCache.put(key, titles);
+            }
+        }
+        return new ArrayList<>(titles); // callers may change the returned list
+    }
 
+    /**
+     * Sets how many query results are cached. Setting the capacity to zero turns
+     * the cache off, so that every query is run against the tree.
+     *
+     * @param capacity the maximum number of cached query results
+     * @throws IllegalArgumentException when capacity is negative
+     */
+    public void setQueryCacheCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity cannot be negative.");
+        }
+        queryCacheCapacity = capacity;
+        queryCache.clear();
+    }
 
+    /**
+     * @return the number of queries answered from the cache since this backend was created
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * @return the number of queries that had to be run since this backend was created
+     */
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    // The queries whose results are cached
+    private enum QueryKind { RANGE, MOST_RECENT }
+
+    /**
+     * Key for a cached query result: the kind of query and every parameter its
+     * result depends on.
+     */
+    private static class QueryKey {
+        private final QueryKind kind;
+        private final Integer low;
+        private final Integer high;
+        private final Integer threshold;
+        private final int maxCount;
+
+        private QueryKey(QueryKind kind, Integer low, Integer high, Integer threshold, int maxCount) {
+            this.kind = kind;
+            this.low = low;
+            this.high = high;
+            this.threshold = threshold;
+            this.maxCount = maxCount;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof QueryKey)) {
+                return false;
+            }
+            QueryKey key = (QueryKey) other;
+            return kind == key.kind && Objects.equals(low, key.low) && Objects.equals(high, key.high)
+                    && Objects.equals(threshold, key.threshold) && maxCount == key.maxCount;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, low, high, threshold, maxCount);
+        }
+    }
+}
@@ -50,6 +50,21 @@ public interface BackendInterface {
      */
     public List<String> getRange(Integer low, Integer high);
 
+    /**
+     * Retrieves at most maxCount song titles, in the same way as
+     * getRange(low, high).  The energy range is remembered for future calls
+     * just like getRange, but the songs after the first maxCount matches are
+     * never visited.
+     *
+     * @param low is the minimum energy of songs in the returned list
+     * @param high is the maximum energy of songs in the returned list
+     * @param maxCount is the maximum number of titles to return
+     * @return List of titles for the first maxCount songs from low to high
+     *     that pass any set filter, or an empty list when no such songs can
+     *     be found
+     */
+    public List<String> getRange(Integer low, Integer high, int maxCount);
+
     /**
      * Retrieves a list of song titles that have a danceability that is
      * larger than the specified threshold.  Similar to the getRange
@@ -1,10 +1,22 @@
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.zip.GZIPOutputStream;
 
 public class BackendTests{
 	
@@ -87,7 +99,505 @@ public class BackendTests{
         // Validate results
         assertFalse(filteredSongs.isEmpty(), "Should return songs with energy between 80-100.");
     }	
+
+    /**
+     * Integration Test 5: Ensures the energy range pushed down into the tree returns
+     * exactly the songs a full traversal of the tree would find within that range.
+     */
+    @Test
+    public void backendIntegration_RangeSeekMatchesScan() throws IOException {
+        IterableSortedCollection<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+        backend.readData("songs.csv");
+
+        // Count the songs in the range with a full traversal
+        int expected = 0;
+        for (Song song : tree) {
+            if (song.getEnergy() >= 60 && song.getEnergy() <= 70) {
+                expected++;
+            }
+        }
+
+        assertEquals(expected, backend.getRange(60, 70).size(),
+                "Range seek should return every song with energy between 60-70.");
+        assertEquals(600, backend.getRange(null, null).size(),
+                "Clearing the range should return all songs again.");
+    }
 	
+    /**
+     * Integration Test 6: Ensures the year-augmented tree finds the same five most recent
+     * songs as collecting and sorting the whole range, including which songs are picked
+     * among songs from the same year.
+     */
+    @Test
+    public void backendIntegration_FiveMostMatchesSort() throws IOException {
+        Backend sorting = new Backend(new IterableRedBlackTree<>());
+        sorting.readData("songs.csv");
+        SongRedBlackTree tree = new SongRedBlackTree();
+        Backend augmented = new Backend(tree);
+        augmented.readData("songs.csv");
+
+        Integer[][] queries = {{50, 80, 60}, {null, null, null}, {null, 40, null}, {70, null, 50}, {65, 65, null}};
+        for (Integer[] query : queries) {
+            sorting.getRange(query[0], query[1]);
+            augmented.getRange(query[0], query[1]);
+            sorting.filterSongs(query[2]);
+            augmented.filterSongs(query[2]);
+            assertEquals(sorting.fiveMost(), augmented.fiveMost(),
+                    "Both trees should return the same songs, in the same order.");
+        }
+    }
+
+    /**
+     * Integration Test 7: Ensures loading a file on several threads finds the same songs,
+     * in the same order, as loading it on a single thread.
+     */
+    @Test
+    public void backendIntegration_ParallelLoad() throws IOException {
+        Backend sequential = new Backend(new IterableRedBlackTree<>());
+        sequential.readData("songs.csv");
+        Backend parallel = new Backend(new IterableRedBlackTree<>());
+        parallel.setLoadParallelism(4);
+        parallel.readData("songs.csv");
+
+        assertEquals(600, parallel.getRange(null, null).size(),
+                "Parallel load should contain exactly 600 songs.");
+        assertEquals(sequential.getRange(null, null), parallel.getRange(null, null),
+                "Parallel load should return the same songs as a sequential load.");
+        assertTrue(parallel.getRange(null, null).contains("Hey, Soul Sister"),
+                "Quoted titles containing commas should be parsed as one field.");
+    }
+
+    /**
+     * Integration Test 8: Ensures a columnar store answers every query the same way as
+     * a red-black tree.
+     */
+    @Test
+    public void backendIntegration_ColumnarStore() throws IOException {
+        IterableSortedCollection<Song> tree = new IterableRedBlackTree<>();
+        Backend treeBackend = new Backend(tree);
+        treeBackend.readData("songs.csv");
+        Backend columnBackend = new Backend(new ColumnarSongStore());
+        columnBackend.readData("songs.csv");
+
+        assertEquals(treeBackend.getRange(null, null), columnBackend.getRange(null, null),
+                "Both collections should return all songs in the same order.");
+        assertEquals(treeBackend.getRange(40, 70), columnBackend.getRange(40, 70),
+                "Both collections should return the same songs for an energy range.");
+        assertEquals(treeBackend.filterSongs(65), columnBackend.filterSongs(65),
+                "Both collections should apply the danceability filter the same way.");
+        assertEquals(treeBackend.getRange(40, 70, 7), columnBackend.getRange(40, 70, 7),
+                "Both collections should stop after the same songs.");
+
+        List<String> expected = treeBackend.fiveMost();
+        List<String> actual = columnBackend.fiveMost();
+        assertEquals(expected.size(), actual.size(), "Both collections should return the same number of songs.");
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(yearOf(tree, expected.get(i)), yearOf(tree, actual.get(i)),
+                    "Both collections should return songs from the same years.");
+        }
+    }
+
+    /**
+     * Integration Test 9: Ensures repeated queries are answered from the cache, and that
+     * loading more songs drops the cached results.
+     */
+    @Test
+    public void backendIntegration_QueryCache() throws IOException {
+        Backend backend = new Backend(new IterableRedBlackTree<>());
+        backend.readData("songs.csv");
+
+        List<String> first = backend.getRange(50, 60);
+        List<String> second = backend.getRange(50, 60);
+        assertEquals(first, second, "A cached query should return the same songs.");
+        assertEquals(1, backend.getCacheMisses(), "The first query should miss the cache.");
+        assertEquals(1, backend.getCacheHits(), "The repeated query should hit the cache.");
+
+        // filterSongs changes the parameters, so it misses, and fiveMost misses once
+        backend.filterSongs(60);
+        backend.fiveMost();
+        backend.fiveMost();
+        assertEquals(3, backend.getCacheMisses());
+        assertEquals(2, backend.getCacheHits());
+
+        // Loading the file again doubles the songs, so the old results must not be reused
+        backend.readData("songs.csv");
+        backend.filterSongs(null);
+        assertEquals(2 * first.size(), backend.getRange(50, 60).size(),
+                "Results after a load should include the new songs.");
+    }
+
+    /**
+     * Tests that songs can be removed and re-keyed without reloading, and that the
+     * year augmentation of SongRedBlackTree stays correct through those changes.
+     */
+    @Test
+    public void backendIntegration_RemoveAndUpdate() throws IOException {
+        SongRedBlackTree songTree = new SongRedBlackTree();
+        Backend backend = new Backend(songTree);
+        IterableRedBlackTree<Song> referenceTree = new IterableRedBlackTree<>();
+        Backend reference = new Backend(referenceTree);
+        backend.readData("songs.csv");
+        reference.readData("songs.csv");
+        int loaded = songTree.size();
+
+        // Remove the songs of one energy value, and move the songs of another
+        List<Song> removed = new ArrayList<>();
+        List<Song> moved = new ArrayList<>();
+        for (Song song : songTree) {
+            if (song.getEnergy() == 60) removed.add(song);
+            if (song.getEnergy() == 70) moved.add(song);
+        }
+        for (Song song : removed) {
+            assertTrue(backend.removeSong(song.getTitle(), 60));
+            assertTrue(reference.removeSong(song.getTitle(), 60));
+        }
+        for (Song song : moved) {
+            assertTrue(backend.updateEnergy(song.getTitle(), 70, 5));
+            assertTrue(reference.updateEnergy(song.getTitle(), 70, 5));
+        }
+        assertFalse(backend.removeSong("No Such Song", 60), "Missing songs cannot be removed.");
+
+        assertEquals(loaded - removed.size(), songTree.size());
+        assertTrue(backend.getRange(60, 60).isEmpty());
+        assertTrue(backend.getRange(70, 70).isEmpty());
+        assertEquals(moved.size(), backend.getRange(5, 5).size());
+        backend.getRange(null, null);
+        reference.getRange(null, null);
+        assertEquals(reference.fiveMost(), backend.fiveMost(),
+                "The most recent songs should reflect the removed and moved songs.");
+    }
+
+    /**
+     * Looks up the year of the song with the given title.
+     */
+    private int yearOf(IterableSortedCollection<Song> tree, String title) {
+        for (Song song : tree) {
+            if (song.getTitle().equals(title)) {
+                return song.getYear();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Ensures a Backend built on an int-keyed energy index answers range queries
+     * like one built on an IterableRedBlackTree, including after songs are removed
+     * and moved, and that the int-keyed searches agree with the songs stored.
+     */
+    @Test
+    public void backendIntegration_IntKeyTree() throws IOException {
+        IntKeyRedBlackTree<Song> keyTree = new IntKeyRedBlackTree<>(Song::getEnergy);
+        Backend backend = new Backend(keyTree);
+        Backend reference = new Backend(new IterableRedBlackTree<>());
+        backend.readData("songs.csv");
+        reference.readData("songs.csv");
+        String title = backend.getRange(80, 80).get(0);
+        assertTrue(backend.removeSong(title, 80));
+        assertTrue(reference.removeSong(title, 80));
+        assertTrue(backend.updateEnergy(backend.getRange(50, 50).get(0), 50, 81));
+        assertTrue(reference.updateEnergy(reference.getRange(50, 50).get(0), 50, 81));
+
+        // Songs of equal energy may be listed in any order, so compare sorted titles
+        Integer[][] ranges = {{null, null}, {40, 60}, {81, 81}, {null, 20}, {95, null}, {60, 40}};
+        for (Integer[] range : ranges) {
+            List<String> expected = new ArrayList<>(reference.getRange(range[0], range[1]));
+            List<String> actual = new ArrayList<>(backend.getRange(range[0], range[1]));
+            expected.sort(null);
+            actual.sort(null);
+            assertEquals(expected, actual, "Ranges should hold the same songs.");
+        }
+
+        int inRange = 0;
+        for (Song song : keyTree) {
+            if (song.getEnergy() >= 40 && song.getEnergy() <= 60) inRange++;
+        }
+        assertEquals(inRange, keyTree.countInRange(40, 60));
+        assertTrue(keyTree.containsKey(81));
+        assertFalse(keyTree.containsKey(1000));
+    }
+
+    /**
+     * Ensures a catalog written to a binary snapshot is read back by readData with
+     * the same songs in the same order, and that other versions are rejected.
+     */
+    @Test
+    public void backendIntegration_Snapshot() throws IOException {
+        Backend backend = new Backend(new IterableRedBlackTree<>());
+        backend.readData("songs.csv");
+        Path snapshot = Files.createTempFile("songs", ".bin");
+        try {
+            backend.writeSnapshot(snapshot.toString());
+            Backend restored = new Backend(new IterableRedBlackTree<>());
+            restored.readData(snapshot.toString());
+            assertEquals(backend.getRange(null, null), restored.getRange(null, null));
+            assertEquals(backend.getRange(40, 60), restored.getRange(40, 60));
+            assertEquals(backend.fiveMost(), restored.fiveMost());
+
+            // A string length that runs past its record is reported, not allocated
+            byte[] bytes = Files.readAllBytes(snapshot);
+            byte titleLength = bytes[13];
+            bytes[13] = 0x7F;
+            Files.write(snapshot, bytes);
+            IOException corrupt = assertThrows(IOException.class,
+                    () -> new Backend(new IterableRedBlackTree<>()).readData(snapshot.toString()));
+            assertTrue(corrupt.getMessage().contains("corrupt"));
+            bytes[13] = titleLength;
+
+            // Bump the version that follows the magic bytes
+            bytes[7]++;
+            Files.write(snapshot, bytes);
+            IOException e = assertThrows(IOException.class,
+                    () -> new Backend(new IterableRedBlackTree<>()).readData(snapshot.toString()));
+            assertTrue(e.getMessage().contains("version"));
+        } finally {
+            Files.deleteIfExists(snapshot);
+        }
+    }
+
+    /**
+     * Ensures a followed file has its existing rows loaded at once, and rows that
+     * are appended later loaded by the next query after they are written, without
+     * loading any row twice. A row is only loaded once its line is complete.
+     */
+    @Test
+    public void backendIntegration_Follow() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("songs", ".csv");
+        Backend backend = new Backend(new IterableRedBlackTree<>());
+        try {
+            Files.writeString(file, "title,artist,top genre,year,bpm,nrgy,dnce,dB,live\n"
+                    + "Old Song,Artist,pop,2010,100,50,50,-5,10\n");
+            backend.follow(file.toString());
+            assertEquals(List.of("Old Song"), backend.getRange(null, null));
+
+            // Half a row is not loaded until the rest of it is written
+            Files.writeString(file, "New Song,Artist,pop,2020,100,60,50,-5,10\nHalf", StandardOpenOption.APPEND);
+            long deadline = System.currentTimeMillis() + 10000;
+            while (backend.getRange(null, null).size() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(List.of("Old Song", "New Song"), backend.getRange(null, null));
+            Files.writeString(file, " Song,Artist,pop,2021,100,70,50,-5,10\n", StandardOpenOption.APPEND);
+            while (backend.getRange(null, null).size() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(List.of("Old Song", "New Song", "Half Song"), backend.getRange(null, null));
+        } finally {
+            backend.stopFollowing();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Ensures a follower reads a file that was replaced from its header, even when
+     * the new file is larger, and does not read rows again when a file is
+     * truncated in place.
+     */
+    @Test
+    public void backendIntegration_FollowReplaced() throws IOException {
+        Path directory = Files.createTempDirectory("songs");
+        Path file = directory.resolve("songs.csv");
+        Path replacement = directory.resolve("songs.csv.new");
+        String header = "title,artist,top genre,year,bpm,nrgy,dnce,dB,live\n";
+        try (CSVFollower follower = new CSVFollower(file.toString(), Comparator.comparingInt(Song::getEnergy))) {
+            Files.writeString(file, header + "Old Song,Artist,pop,2010,100,50,50,-5,10\n");
+            assertEquals(1, follower.readNew().size());
+
+            // A larger file moved in place of the old one is read from its start
+            Files.writeString(replacement, header + "First Song,Artist,pop,2010,100,50,50,-5,10\n"
+                    + "Second Song,Artist,pop,2010,100,50,50,-5,10\n");
+            Files.move(replacement, file, StandardCopyOption.REPLACE_EXISTING);
+            List<Song> songs = follower.readNew();
+            assertEquals(2, songs.size());
+            assertEquals("First Song", songs.get(0).getTitle());
+
+            // Truncating the file in place does not load its rows a second time
+            Files.writeString(file, header);
+            assertEquals(0, follower.readNew().size());
+            Files.writeString(file, "Third Song,Artist,pop,2010,100,50,50,-5,10\n", StandardOpenOption.APPEND);
+            songs = follower.readNew();
+            assertEquals(1, songs.size());
+            assertEquals("Third Song", songs.get(0).getTitle());
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(replacement);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Ensures songs loaded by a backend share one String and one code per artist
+     * and per genre, that genres are loaded, and that matching songs by genre code
+     * finds the same songs as matching them by genre String.
+     */
+    @Test
+    public void backendIntegration_Dictionary() throws IOException {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+        backend.readData("songs.csv");
+        StringDictionary dictionary = backend.getDictionary();
+
+        Map<String, String> artists = new HashMap<>();
+        for (Song song : tree) {
+            assertNotNull(song.getGenres(), "Genres should be loaded.");
+            assertSame(dictionary.value(song.getArtistCode()), song.getArtist());
+            assertSame(dictionary.value(song.getGenreCode()), song.getGenres());
+            // every song of an artist holds the same String
+            assertSame(artists.computeIfAbsent(song.getArtist(), artist -> song.getArtist()), song.getArtist());
+        }
+        assertTrue(dictionary.size() < tree.size(), "Artists and genres repeat across songs.");
+
+        int danceCode = dictionary.find("dance pop");
+        assertTrue(danceCode >= 0);
+        int byCode = 0;
+        int byString = 0;
+        for (Song song : tree) {
+            if (song.getGenreCode() == danceCode) byCode++;
+            if (song.getGenres().equals("dance pop")) byString++;
+        }
+        assertTrue(byCode > 0);
+        assertEquals(byString, byCode);
+        assertEquals(-1, dictionary.find("no such genre"));
+    }
+
+    /**
+     * Ensures rows that cannot be parsed are skipped and reported, by both the
+     * sequential and the parallel loaders, and that every other row still loads,
+     * while a file that is missing or has no usable header fails the load.
+     */
+    @Test
+    public void backendIntegration_LoadReport() throws IOException {
+        Path file = Files.createTempFile("songs", ".csv");
+        String rows = "title,artist,top genre,year,bpm,nrgy,dnce,dB,live\n"
+                + "First Song,Artist,pop,2010,100,50,50,-5,10\n"
+                + "Typo Song,Artist,pop,20x9,100,60,50,-5,10\n"
+                + "\n"
+                + "Short Song,Artist,pop,2010\n"
+                + "Last Song,Artist,pop,2011,100,70,50,-5,10\n";
+        try {
+            for (int parallelism : new int[] {1, 4}) {
+                Files.writeString(file, rows);
+                Backend backend = new Backend(new IterableRedBlackTree<>());
+                backend.setLoadParallelism(parallelism);
+                backend.readData(file.toString());
+                assertEquals(List.of("First Song", "Last Song"), backend.getRange(null, null));
+
+                LoadReport report = backend.getLoadReport();
+                assertEquals(2, report.getLoadedRows());
+                assertEquals(2, report.getRejectedRows());
+                List<String> samples = report.getSamples();
+                assertEquals(2, samples.size());
+                assertTrue(samples.get(0).contains("20x9"), samples.get(0));
+                assertTrue(samples.get(1).contains("Short Song"), samples.get(1));
+
+                // Files that cannot be read at all fail the load instead of loading nothing
+                assertThrows(IOException.class, () -> backend.readData(file + ".missing"));
+                Files.writeString(file, "title,artist\nFirst Song,Artist\n");
+                assertThrows(IOException.class, () -> backend.readData(file.toString()));
+                assertEquals(List.of("First Song", "Last Song"), backend.getRange(null, null));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Ensures a gzip-compressed copy of songs.csv loads the same songs as the file
+     * itself, including when the decompressed blocks are shorter than its lines.
+     */
+    @Test
+    public void backendIntegration_Gzip() throws IOException {
+        Path file = Files.createTempFile("songs", ".csv.gz");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+                Files.copy(Path.of("songs.csv"), out);
+            }
+            Backend plain = new Backend(new IterableRedBlackTree<>());
+            plain.readData("songs.csv");
+            Backend compressed = new Backend(new IterableRedBlackTree<>());
+            compressed.readData(file.toString());
+            assertEquals(plain.getRange(null, null), compressed.getRange(null, null));
+            assertEquals(plain.getLoadReport().getLoadedRows(), compressed.getLoadReport().getLoadedRows());
+
+            List<Song> songs = new GzipCSVReader(new StringDictionary(), 16).read(file.toString(),
+                    Comparator.comparingInt(Song::getEnergy));
+            List<Song> expected = new MappedCSVReader().read("songs.csv", Comparator.comparingInt(Song::getEnergy));
+            assertEquals(expected.size(), songs.size());
+            for (int i = 0; i < songs.size(); i++) {
+                assertEquals(expected.get(i).getTitle(), songs.get(i).getTitle());
+                assertEquals(expected.get(i).getLiveness(), songs.get(i).getLiveness());
+            }
+
+            // A file that decompresses to nothing has no header, like an empty .csv file
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+                out.flush();
+            }
+            for (int parallelism : new int[] {1, 3}) {
+                Backend empty = new Backend(new IterableRedBlackTree<>());
+                empty.setLoadParallelism(parallelism);
+                IOException e = assertThrows(IOException.class, () -> empty.readData(file.toString()));
+                assertEquals("Empty CSV file or missing header line.", e.getMessage());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Ensures a pipelined load of a plain and of a gzip-compressed file finds the
+     * same songs, in the same order, as a sequential load, and that every stage
+     * counts the work it did.
+     */
+    @Test
+    public void backendIntegration_Pipeline() throws IOException {
+        Path file = Files.createTempFile("songs", ".csv.gz");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+                Files.copy(Path.of("songs.csv"), out);
+            }
+            Backend sequential = new Backend(new IterableRedBlackTree<>());
+            sequential.readData("songs.csv");
+            assertTrue(sequential.getIngestCounters().isEmpty());
+
+            for (String filename : new String[] {"songs.csv", file.toString()}) {
+                Backend pipelined = new Backend(new IterableRedBlackTree<>());
+                pipelined.setLoadParallelism(3);
+                pipelined.readData(filename);
+                assertEquals(sequential.getRange(null, null), pipelined.getRange(null, null));
+
+                List<IngestPipeline.StageCounters> counters = pipelined.getIngestCounters();
+                assertEquals(List.of("reader", "parser", "writer"),
+                        List.of(counters.get(0).getName(), counters.get(1).getName(), counters.get(2).getName()));
+                assertEquals(Files.size(Path.of("songs.csv")), counters.get(0).getBytes());
+                assertEquals(600, counters.get(1).getRows());
+                assertEquals(600, counters.get(2).getRows());
+                assertEquals(counters.get(1).getBatches(), counters.get(2).getBatches());
+            }
+
+            // A writer that fails while the file is still being read ends the load,
+            // and no stage is left running to interrupt the caller afterwards
+            try (OutputStream out = Files.newOutputStream(file)) {
+                out.write(Files.readAllBytes(Path.of("songs.csv")));
+                List<String> rows = Files.readAllLines(Path.of("songs.csv"));
+                for (int i = 0; i < 100; i++) {
+                    out.write(String.join("\n", rows.subList(1, rows.size())).getBytes(StandardCharsets.UTF_8));
+                    out.write('\n');
+                }
+            }
+            IngestPipeline pipeline = new IngestPipeline(3, new StringDictionary());
+            assertThrows(IllegalStateException.class, () -> pipeline.load(file.toString(),
+                    Comparator.comparingInt(Song::getEnergy), new LoadReport(), songs -> {
+                        throw new IllegalStateException("The tree is full.");
+                    }));
+            assertFalse(Thread.interrupted(), "The load should not leave the caller interrupted.");
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                assertFalse(thread.getName().startsWith("ingest-"), "Every stage should have ended.");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
     /**
      * Tests the readData method to ensure songs are correctly loaded from the CSV file
      * and inserted into the tree with the expected data.
@@ -230,6 +740,42 @@ public class BackendTests{
                 "The tree should return be empty.");
     }
 
-}
-
+    /**
+     * Ensures rows parsed from bytes match rows parsed from Strings.
+     * - Uses quoted fields holding commas, quoted numbers, negative numbers, extra
+     *   spaces, multi-byte characters and a \r line ending.
+     */
+    @Test
+    public void backendTest4() throws IOException {
+        SongCSVFormat format = new SongCSVFormat("nrgy,title,artist,top genre,year,bpm,dnce,dB,live,pop");
+        SongCSVFormat.ByteParser parser = format.newByteParser();
+        String[] lines = {
+            "89,\"Hey, Soul Sister\",Train,neo mellow,2010,97,67,-4,8,83",
+            " 75 ,Beyoncé Song , \"Beyoncé\" ,dance pop,\"2016\",119,77,-12,4,80\r",
+            "60,Title,Artist,genre,2019,+100,50,0,10"
+        };
+        for (String line : lines) {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            Song fromBytes = parser.parseSong(ByteBuffer.wrap(bytes), 0, bytes.length, null);
+            Song fromString = format.parseSong(line, null);
+            assertEquals(fromString.getTitle(), fromBytes.getTitle());
+            assertEquals(fromString.getArtist(), fromBytes.getArtist());
+            assertEquals(fromString.getGenres(), fromBytes.getGenres());
+            assertEquals(fromString.getYear(), fromBytes.getYear());
+            assertEquals(fromString.getEnergy(), fromBytes.getEnergy());
+            assertEquals(fromString.getBPM(), fromBytes.getBPM());
+            assertEquals(fromString.getDanceability(), fromBytes.getDanceability());
+            assertEquals(fromString.getLoudness(), fromBytes.getLoudness());
+            assertEquals(fromString.getLiveness(), fromBytes.getLiveness());
+        }
+
+        // Malformed rows fail the same way for both parsers
+        byte[] badNumber = "60,Title,Artist,genre,20x9,100,50,0,10".getBytes(StandardCharsets.UTF_8);
+        assertThrows(NumberFormatException.class,
+                () -> parser.parseSong(ByteBuffer.wrap(badNumber), 0, badNumber.length, null));
+        byte[] tooShort = "60,Title,Artist".getBytes(StandardCharsets.UTF_8);
+        assertThrows(ArrayIndexOutOfBoundsException.class,
+                () -> parser.parseSong(ByteBuffer.wrap(tooShort), 0, tooShort.length, null));
+    }
 
+}
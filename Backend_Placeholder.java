@@ -41,6 +41,12 @@ public class Backend_Placeholder implements BackendInterface {
         return fiveMost();
     }
 
+    // same as above, but the list is cut down to maxCount titles
+    public List<String> getRange(Integer low, Integer high, int maxCount) {
+        List<String> titles = getRange(low, high);
+        return titles.size() > maxCount ? titles.subList(0, maxCount) : titles;
+    }
+
     // filters are being completely ignored here, and the fivemost recent
     // songs are really the five only
     public List<String> filterSongs(Integer threshold) {
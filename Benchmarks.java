@@ -0,0 +1,261 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmarks for the tree operations and Backend queries on synthetic catalogs.
+ * Every benchmark is run for a few warmup rounds, so the JIT has compiled the code
+ * being measured, followed by measured rounds. For each benchmark the throughput,
+ * the mean and best latency per operation, and the bytes allocated per operation
+ * are reported.
+ *
+ * Catalog sizes are given as arguments, for example "java Benchmarks 1000 1000000".
+ * Without arguments, catalogs of 10^3, 10^4 and 10^5 songs are used. Catalogs of
+ * 10^7 songs need a larger heap, such as -Xmx8g.
+ */
+public class Benchmarks {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+    // number of queries run in each round of the query benchmarks
+    private static final int QUERIES_PER_ROUND = 1000;
+    // Backend queries return a share of the catalog, so fewer of them are run on
+    // large catalogs, keeping rounds at about this many songs returned
+    private static final long SONGS_PER_ROUND = 10_000_000L;
+
+    private static final Comparator<Song> ENERGY_COMPARATOR = Comparator.comparingInt(Song::getEnergy);
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    // results of the measured operations are added here, so the JIT cannot remove them
+    private static long sink = 0;
+
+    // the trees compared by the benchmarks
+    private static final String[] TREES = {"Tree_Placeholder", "BinarySearchTree", "IterableRedBlackTree",
+        "SongRedBlackTree", "ColumnarSongStore", "BPlusTree", "ArrayRedBlackTree",
+        "IntKeyRedBlackTree", "BucketRedBlackTree"};
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = {1_000, 10_000, 100_000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.printf("%-12s %-22s %10s %14s %14s %14s %12s%n",
+                "operation", "collection", "songs", "ops/s", "mean ns/op", "best ns/op", "bytes/op");
+        for (int n : sizes) {
+            List<Song> songs = catalog(n, new Random(n));
+            File csv = writeCatalog(songs);
+            try {
+                for (String tree : TREES) {
+                    benchmarkTree(tree, songs);
+                }
+                for (String tree : TREES) {
+                    if (!tree.equals("BinarySearchTree")) {
+                        benchmarkBackend(tree, songs, csv);
+                    }
+                }
+            } finally {
+                csv.delete();
+            }
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    /**
+     * Benchmarks insert, contains and a full traversal of one kind of tree.
+     */
+    private static void benchmarkTree(String name, List<Song> songs) {
+        int n = songs.size();
+        run("insert", name, n, n, () -> {
+            SortedCollection<Song> tree = newTree(name);
+            for (Song song : songs) {
+                tree.insert(song);
+            }
+        });
+
+        SortedCollection<Song> tree = newTree(name);
+        for (Song song : songs) {
+            tree.insert(song);
+        }
+        Random random = new Random(1);
+        run("contains", name, n, QUERIES_PER_ROUND, () -> {
+            for (int i = 0; i < QUERIES_PER_ROUND; i++) {
+                sink += tree.contains(probe(random.nextInt(101))) ? 1 : 0;
+            }
+        });
+
+        if (tree instanceof Iterable) {
+            run("iterate", name, n, 1, () -> {
+                for (Object song : (Iterable<?>) tree) {
+                    sink += song.hashCode();
+                }
+            });
+        }
+    }
+
+    /**
+     * Benchmarks readData, getRange, filterSongs and fiveMost of a Backend that
+     * stores its songs in one kind of tree. The query cache is turned off so that
+     * every query is run against the tree.
+     */
+    private static void benchmarkBackend(String name, List<Song> songs, File csv) throws IOException {
+        int n = songs.size();
+        run("readData", name, n, 1, () -> {
+            try {
+                IterableSortedCollection<Song> loaded = (IterableSortedCollection<Song>) newTree(name);
+                new Backend(loaded).readData(csv.getPath());
+                sink += loaded.size();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        Backend backend = new Backend((IterableSortedCollection<Song>) newTree(name));
+        backend.readData(csv.getPath());
+        backend.setQueryCacheCapacity(0);
+        int queries = (int) Math.max(10, Math.min(QUERIES_PER_ROUND, SONGS_PER_ROUND / n));
+        Random random = new Random(2);
+        run("getRange", name, n, queries, () -> {
+            backend.filterSongs(null);
+            for (int i = 0; i < queries; i++) {
+                int low = random.nextInt(96);
+                sink += backend.getRange(low, low + 5).size(); // a narrow energy band
+            }
+        });
+        run("filterSongs", name, n, queries, () -> {
+            for (int i = 0; i < queries; i++) {
+                int low = random.nextInt(96);
+                backend.getRange(low, low + 5);
+                sink += backend.filterSongs(random.nextInt(100)).size();
+            }
+        });
+        run("fiveMost", name, n, queries, () -> {
+            backend.filterSongs(null);
+            for (int i = 0; i < queries; i++) {
+                int low = random.nextInt(51);
+                backend.getRange(low, low + 50, 0); // half of the catalog, without listing it
+                sink += backend.fiveMost().size();
+            }
+        });
+    }
+
+    /**
+     * Runs a benchmark and prints its results.
+     *
+     * @param operation  the name of the operation being measured
+     * @param collection the name of the collection being measured
+     * @param n          the number of songs in the catalog
+     * @param opsPerRound the number of operations performed by each call of round
+     * @param round      performs one round of operations
+     */
+    private static void run(String operation, String collection, int n, int opsPerRound, Runnable round) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round.run();
+        }
+
+        long totalNanos = 0;
+        long bestNanos = Long.MAX_VALUE;
+        long allocatedBefore = allocatedBytes();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            round.run();
+            long elapsed = System.nanoTime() - start;
+            totalNanos += elapsed;
+            bestNanos = Math.min(bestNanos, elapsed);
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        double ops = (double) MEASURED_ROUNDS * opsPerRound;
+        System.out.printf("%-12s %-22s %10d %14.0f %14.1f %14.1f %12s%n",
+                operation, collection, n,
+                ops / (totalNanos / 1e9),
+                totalNanos / ops,
+                bestNanos / (double) opsPerRound,
+                allocated < 0 ? "n/a" : String.format("%.1f", allocated / ops));
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far, or -1
+     * when the JVM cannot measure it.
+     */
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Creates an empty collection of the kind with the given name.
+     */
+    private static SortedCollection<Song> newTree(String name) {
+        switch (name) {
+            case "Tree_Placeholder":
+                return new Tree_Placeholder();
+            case "BinarySearchTree":
+                return new BinarySearchTree<>();
+            case "IterableRedBlackTree":
+                return new IterableRedBlackTree<>();
+            case "SongRedBlackTree":
+                return new SongRedBlackTree();
+            case "ColumnarSongStore":
+                return new ColumnarSongStore();
+            case "BPlusTree":
+                return new BPlusTree<>();
+            case "ArrayRedBlackTree":
+                return new ArrayRedBlackTree<>();
+            case "IntKeyRedBlackTree":
+                return new IntKeyRedBlackTree<>(Song::getEnergy);
+            case "BucketRedBlackTree":
+                return new BucketRedBlackTree<>();
+            default:
+                throw new IllegalArgumentException("Unknown collection: " + name);
+        }
+    }
+
+    /**
+     * Creates a song that only carries an energy value, for lookups.
+     */
+    private static Song probe(int energy) {
+        return new Song("", "", "", 0, 0, energy, 0, 0, 0, ENERGY_COMPARATOR);
+    }
+
+    /**
+     * Creates a catalog of n random songs, ordered by energy.
+     */
+    private static List<Song> catalog(int n, Random random) {
+        List<Song> songs = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            songs.add(new Song("Song " + i, "Artist " + random.nextInt(5000), "genre " + random.nextInt(300),
+                    1950 + random.nextInt(75), 60 + random.nextInt(140), random.nextInt(101),
+                    random.nextInt(101), -random.nextInt(20), random.nextInt(101), ENERGY_COMPARATOR));
+        }
+        return songs;
+    }
+
+    /**
+     * Writes a catalog to a temporary .csv file with the same columns as songs.csv.
+     */
+    private static File writeCatalog(List<Song> songs) throws IOException {
+        File csv = File.createTempFile("songs", ".csv");
+        try (PrintWriter out = new PrintWriter(csv, StandardCharsets.UTF_8)) {
+            out.println("title,artist,top genre,year,bpm,nrgy,dnce,dB,live,val,dur,acous,spch,pop");
+            for (Song song : songs) {
+                out.println(song.getTitle() + "," + song.getArtist() + ",genre," + song.getYear() + ","
+                        + song.getBPM() + "," + song.getEnergy() + "," + song.getDanceability() + ","
+                        + song.getLoudness() + "," + song.getLiveness() + ",50,200,10,5,70");
+            }
+        }
+        return csv;
+    }
+}
@@ -22,29 +22,30 @@ public class BinarySearchTree<T extends Comparable<T>> implements SortedCollecti
 	}
 
 	/**
-	 * Performs the naive binary search tree insert algorithm to recursively insert
-	 * the provided newNode (which has already been initialized with a data value)
-	 * into the provided tree/subtree. When the provided subtree is null, this
-	 * method does nothing.
+	 * Performs the naive binary search tree insert algorithm to insert the
+	 * provided newNode (which has already been initialized with a data value)
+	 * into the provided tree/subtree. The tree is descended with a loop rather
+	 * than recursion, so that even a degenerate tree cannot overflow the stack.
+	 * When the provided subtree is null, this method does nothing.
 	 */
 	protected void insertHelper(BinaryTreeNode<T> newNode, BinaryTreeNode<T> subtree) {
-		if (subtree == null) {
-			return; // Base case reached
-		}
-		if (newNode.getData().compareTo(subtree.getData()) > 0) {
-			if (subtree.childRight() != null) {
-				insertHelper(newNode, subtree.childRight()); // Recur right subtree
-				return;
-			}
-			subtree.setChildRight(newNode); // Set right child
-			newNode.setParent(subtree); // Link parent
-		} else {
-			if (subtree.childLeft() != null) {
-				insertHelper(newNode, subtree.childLeft()); // Recur left subtree
-				return;
+		T data = newNode.getData();
+		while (subtree != null) {
+			if (data.compareTo(subtree.getData()) > 0) {
+				if (subtree.childRight() == null) {
+					subtree.setChildRight(newNode); // Set right child
+					newNode.setParent(subtree); // Link parent
+					return;
+				}
+				subtree = subtree.childRight(); // Descend right subtree
+			} else {
+				if (subtree.childLeft() == null) {
+					subtree.setChildLeft(newNode); // Set left child
+					newNode.setParent(subtree); // Link parent
+					return;
+				}
+				subtree = subtree.childLeft(); // Descend left subtree
 			}
-			subtree.setChildLeft(newNode); // Set left child
-			newNode.setParent(subtree); // Link parent
 		}
 	}
 
@@ -64,16 +65,14 @@ public class BinarySearchTree<T extends Comparable<T>> implements SortedCollecti
 	}
 
 	private boolean containsHelper(Comparable<T> data, BinaryTreeNode<T> root2) {
-		if (root2 == null) {
-			return false; // Data not found
-		}
-		if (data.compareTo(root2.getData()) > 0) {
-			return containsHelper(data, root2.childRight()); // Recur right subtree
-		}
-		if (data.compareTo(root2.getData()) < 0) {
-			return containsHelper(data, root2.childLeft()); // Recur left subtree
+		while (root2 != null) {
+			int comparison = data.compareTo(root2.getData()); // Compare once per level
+			if (comparison == 0) {
+				return true; // Found matching data
+			}
+			root2 = (comparison > 0) ? root2.childRight() : root2.childLeft();
 		}
-		return data.compareTo(root2.getData()) == 0; // Found matching data
+		return false; // Data not found
 	}
 
 	/**
@@ -84,16 +83,35 @@ public class BinarySearchTree<T extends Comparable<T>> implements SortedCollecti
 	 */
 	@Override
 	public int size() {
-		int size = 0;
-		size = sizeHelper(root); // Start recursive count
-		return size;
+		return sizeHelper(root); // Start count
 	}
 
+	/**
+	 * Counts the nodes of a subtree by walking it through parent links, which
+	 * needs neither recursion nor an explicit stack.
+	 */
 	private int sizeHelper(BinaryTreeNode<T> tempRoot) {
-		if (tempRoot == null) {
-			return 0; // Leaf reached
+		int size = 0;
+		BinaryTreeNode<T> node = tempRoot;
+		BinaryTreeNode<T> previous = (tempRoot == null) ? null : tempRoot.parent();
+		while (node != null) {
+			BinaryTreeNode<T> next;
+			if (previous == node.parent()) {
+				size++; // First visit of this node
+				next = (node.childLeft() != null) ? node.childLeft()
+						: (node.childRight() != null) ? node.childRight() : node.parent();
+			} else if (previous == node.childLeft() && node.childRight() != null) {
+				next = node.childRight(); // Back from the left subtree
+			} else {
+				next = node.parent(); // Both subtrees are done
+			}
+			if (node == tempRoot && next == tempRoot.parent()) {
+				break; // Leaving the subtree
+			}
+			previous = node;
+			node = next;
 		}
-		return 1 + sizeHelper(tempRoot.childLeft()) + sizeHelper(tempRoot.childRight()); // Count nodes
+		return size;
 	}
 
 	/**
@@ -232,10 +250,59 @@ public class BinarySearchTree<T extends Comparable<T>> implements SortedCollecti
 		return true; // All tests pass
 	}
 
+	/**
+	 * Tester test4 method inserts a long run of values in ascending order, which
+	 * turns the tree into a single chain of right children, and checks that
+	 * insert, contains and size all handle that height without overflowing the
+	 * stack. The test runs on a thread with a small stack, so that a chain of a
+	 * few thousand nodes is enough to overflow recursive code.
+	 * 
+	 * @return true if the degenerate tree is built, searched and measured correctly
+	 */
+	public boolean test4() {
+		boolean[] passed = new boolean[1];
+		Thread thread = new Thread(null, () -> {
+			try {
+				passed[0] = buildChain(20000);
+			} catch (StackOverflowError e) {
+				passed[0] = false;
+			}
+		}, "test4", 256 * 1024);
+		thread.start();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		return passed[0];
+	}
+
+	/**
+	 * Builds a chain of n ascending values for test4, and checks the tree.
+	 */
+	private static boolean buildChain(int n) {
+		BinarySearchTree<Integer> tree = new BinarySearchTree<>();
+		for (int i = 0; i < n; i++) {
+			tree.insert(i); // Every value becomes a right child
+		}
+		if (tree.size() != n)
+			return false;
+		if (!tree.contains(0) || !tree.contains(n - 1) || tree.contains(n))
+			return false;
+
+		tree.insert(n / 2); // Duplicate goes to the left
+		if (tree.size() != n + 1 || !tree.contains(n / 2))
+			return false;
+
+		return true; // All tests pass
+	}
+
 	public static void main(String[] args) {
 		BinarySearchTree<String> bst = new BinarySearchTree<>();
 		System.out.println("Test 1: " + (bst.test1() ? "PASS" : "FAIL"));
 		System.out.println("Test 2: " + (bst.test2() ? "PASS" : "FAIL"));
 		System.out.println("Test 3: " + (bst.test3() ? "PASS" : "FAIL"));
+		System.out.println("Test 4: " + (bst.test4() ? "PASS" : "FAIL"));
 	}
 }
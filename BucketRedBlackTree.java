@@ -0,0 +1,481 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * This class is a sorted multiset that stores all of the values sharing a key in a
+ * single node. Each node of the underlying red-black tree holds a bucket: an array of
+ * the values that compare as equal, kept in the order they were inserted. The height
+ * of the tree therefore depends on the number of distinct keys rather than on the
+ * number of values, so a catalog of millions of songs with energies from 0 to 100 is
+ * stored in a tree of 101 nodes. Inserting a value whose key is already present
+ * appends it to that key's bucket without any rotations.
+ *
+ * Every node also counts the values stored in its subtree, so that size, rank, select
+ * and countInRange count values rather than nodes.
+ *
+ * @param <T> The type of data stored in the tree, must be comparable
+ */
+public class BucketRedBlackTree<T extends Comparable<T>> implements IterableSortedCollection<T> {
+
+    /**
+     * The values of one key, in insertion order. Buckets compare by that key.
+     */
+    protected static class Bucket<T extends Comparable<T>> implements Comparable<Bucket<T>> {
+
+        private Object[] values = new Object[2];
+        private int count = 0;
+
+        private Bucket(T first) {
+            add(first);
+        }
+
+        private void add(T value) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = value;
+        }
+
+        /**
+         * Removes the first value that equals() value, keeping the order of the rest.
+         * @return true if a value was removed
+         */
+        private boolean remove(T value) {
+            for (int i = 0; i < count; i++) {
+                if (value.equals(values[i])) {
+                    System.arraycopy(values, i + 1, values, i, count - i - 1);
+                    values[--count] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked") // values only ever holds values of type T
+        private T get(int index) {
+            return (T) values[index];
+        }
+
+        private T key() {
+            return get(0);
+        }
+
+        @Override
+        public int compareTo(Bucket<T> other) {
+            return key().compareTo(other.key());
+        }
+    }
+
+    /**
+     * Node of the bucket tree, which adds the number of values stored in its subtree
+     * to the number of buckets kept by RBTNode.
+     */
+    protected static class BucketNode<T extends Comparable<T>> extends RBTNode<Bucket<T>> {
+
+        // the number of values in every bucket of the subtree rooted at this node
+        protected int count;
+
+        public BucketNode(Bucket<T> data) {
+            super(data);
+            this.count = data.count;
+        }
+    }
+
+    /**
+     * Red-black tree of buckets, which keeps the value counts of its nodes up to date.
+     */
+    private static class Buckets<T extends Comparable<T>> extends RedBlackTree<Bucket<T>> {
+
+        @Override
+        protected RBTNode<Bucket<T>> createNode(Bucket<T> data) {
+            return new BucketNode<>(data);
+        }
+
+        @Override
+        protected void updateAugmentation(BinaryTreeNode<Bucket<T>> node) {
+            super.updateAugmentation(node);
+            BucketNode<T> bucketNode = (BucketNode<T>) node;
+            bucketNode.count = bucketNode.getData().count
+                    + countOf(bucketNode.childLeft()) + countOf(bucketNode.childRight());
+        }
+    }
+
+    private final Buckets<T> buckets = new Buckets<>();
+
+    // Fields to store the minimum and maximum values for the iterator
+    private Comparable<T> min = null;
+    private Comparable<T> max = null;
+
+    /**
+     * Inserts a new data value into the tree. When a value with the same key is
+     * already stored, data is appended to that key's bucket, and only the value
+     * counts of the nodes above it change.
+     * @param data the new value being inserted
+     * @throws NullPointerException if data argument is null
+     */
+    @Override
+    public void insert(T data) throws NullPointerException {
+        if (data == null) {
+            throw new NullPointerException("Data cannot be null."); // Check for null input
+        }
+        BucketNode<T> node = findBucket(data);
+        if (node == null) {
+            buckets.insert(new Bucket<>(data));
+            return;
+        }
+        node.getData().add(data);
+        for (RBTNode<Bucket<T>> ancestor = node; ancestor != null; ancestor = ancestor.parent()) {
+            ((BucketNode<T>) ancestor).count++;
+        }
+    }
+
+    /**
+     * Inserts many values at once. The values are sorted and grouped by key, values
+     * of keys already present are appended to their buckets, and the buckets of new
+     * keys are added to the tree with a single rebuild.
+     * @param values the new values being inserted
+     * @throws NullPointerException if values or any of its elements is null
+     */
+    @Override
+    public void insertAll(List<T> values) throws NullPointerException {
+        List<T> sorted = new ArrayList<>(values);
+        for (T data : sorted) {
+            if (data == null) {
+                throw new NullPointerException("Data cannot be null."); // Check for null input
+            }
+        }
+        sorted.sort(null); // stable, so each bucket keeps the order of values
+
+        List<Bucket<T>> newBuckets = new ArrayList<>();
+        Bucket<T> last = null;
+        for (T data : sorted) {
+            if (last != null && last.key().compareTo(data) == 0) {
+                last.add(data);
+                continue;
+            }
+            BucketNode<T> node = findBucket(data);
+            if (node == null) {
+                last = new Bucket<>(data);
+                newBuckets.add(last);
+            } else {
+                last = node.getData();
+                last.add(data);
+            }
+        }
+        // Values appended to existing buckets are counted by this rebuild too
+        buckets.insertAll(newBuckets);
+    }
+
+    /**
+     * Removes one occurrence of data from the tree. The node of its key is only
+     * removed from the tree when data was the last value in the bucket.
+     * @param data the value being removed
+     * @return true if a value was removed, false if data was not in the tree
+     * @throws NullPointerException if data argument is null
+     */
+    @Override
+    public boolean remove(T data) throws NullPointerException {
+        if (data == null) {
+            throw new NullPointerException("Data cannot be null."); // Check for null input
+        }
+        BucketNode<T> node = findBucket(data);
+        if (node == null) {
+            return false;
+        }
+        Bucket<T> bucket = node.getData();
+        if (bucket.count == 1) {
+            // The bucket is found by its key, so it leaves the tree before it is emptied
+            return data.equals(bucket.key()) && buckets.remove(bucket);
+        }
+        if (!bucket.remove(data)) {
+            return false;
+        }
+        for (RBTNode<Bucket<T>> ancestor = node; ancestor != null; ancestor = ancestor.parent()) {
+            ((BucketNode<T>) ancestor).count--;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(Comparable<T> data) {
+        return data != null && findBucket(data) != null;
+    }
+
+    @Override
+    public int size() {
+        return countOf(root());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root() == null;
+    }
+
+    @Override
+    public void clear() {
+        buckets.clear();
+    }
+
+    /**
+     * Counts the values in the tree that are strictly less than key.
+     * @param key the value to rank
+     * @return the number of values stored in the tree that are less than key
+     * @throws NullPointerException if key is null
+     */
+    @Override
+    public int rank(Comparable<T> key) {
+        return countBelow(key, false);
+    }
+
+    /**
+     * Returns the value at the given position in the sorted order of this tree.
+     * @param index the zero-based position of the value, counting duplicates
+     * @return the value at that position
+     * @throws IndexOutOfBoundsException if index is negative or not less than size()
+     */
+    @Override
+    public T select(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size());
+        }
+        RBTNode<Bucket<T>> node = root();
+        while (true) {
+            int leftCount = countOf(node.childLeft());
+            int bucketCount = node.getData().count;
+            if (index < leftCount) {
+                node = node.childLeft();
+            } else if (index < leftCount + bucketCount) {
+                return node.getData().get(index - leftCount);
+            } else {
+                index -= leftCount + bucketCount;
+                node = node.childRight();
+            }
+        }
+    }
+
+    @Override
+    public int countInRange(Comparable<T> lo, Comparable<T> hi) {
+        int atMostHi = (hi == null) ? size() : countBelow(hi, true);
+        int belowLo = (lo == null) ? 0 : countBelow(lo, false);
+        return Math.max(0, atMostHi - belowLo);
+    }
+
+    @Override
+    public void setIteratorMin(Comparable<T> min) {
+        this.min = min;
+    }
+
+    @Override
+    public void setIteratorMax(Comparable<T> max) {
+        this.max = max;
+    }
+
+    /**
+     * Returns an iterator over the values within the iterator bounds, in sorted
+     * order. Values sharing a key are returned in the order they were inserted.
+     * The first bucket is found with a single descent over the distinct keys, and
+     * later buckets are reached through parent links.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        RBTNode<Bucket<T>> first = null;
+        RBTNode<Bucket<T>> node = root();
+        while (node != null) {
+            if (min == null || min.compareTo(node.getData().key()) <= 0) {
+                first = node;
+                node = node.childLeft(); // Navigate left
+            } else {
+                node = node.childRight(); // Skip left if below min
+            }
+        }
+        return new BucketIterator(first, max);
+    }
+
+    /**
+     * Iterator over the values of consecutive buckets, until the first bucket whose
+     * key exceeds the maximum.
+     */
+    private class BucketIterator implements Iterator<T> {
+        private final Comparable<T> max;
+        private RBTNode<Bucket<T>> node; // bucket being returned, or null when done
+        private int index = 0; // position of the next value within the bucket
+
+        private BucketIterator(RBTNode<Bucket<T>> first, Comparable<T> max) {
+            this.max = max;
+            this.node = withinMax(first);
+        }
+
+        private RBTNode<Bucket<T>> withinMax(RBTNode<Bucket<T>> node) {
+            if (node != null && max != null && max.compareTo(node.getData().key()) < 0) {
+                return null;
+            }
+            return node;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return node != null;
+        }
+
+        @Override
+        public T next() {
+            if (node == null) {
+                throw new NoSuchElementException("No more elements in the iterator");
+            }
+            Bucket<T> bucket = node.getData();
+            T value = bucket.get(index++);
+            if (index == bucket.count) {
+                node = withinMax(RedBlackTree.successor(node));
+                index = 0;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Finds the node whose bucket holds the values that compare as equal to key.
+     * @return that node, or null when no stored value has that key
+     */
+    private BucketNode<T> findBucket(Comparable<T> key) {
+        RBTNode<Bucket<T>> node = root();
+        while (node != null) {
+            int comparison = key.compareTo(node.getData().key()); // Compare once per level
+            if (comparison == 0) {
+                return (BucketNode<T>) node;
+            }
+            node = (comparison > 0) ? node.childRight() : node.childLeft();
+        }
+        return null;
+    }
+
+    /**
+     * Counts the values that are less than key (or less than or equal to key when
+     * inclusive is true) with a single descent from the root.
+     */
+    private int countBelow(Comparable<T> key, boolean inclusive) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null.");
+        }
+        int count = 0;
+        RBTNode<Bucket<T>> node = root();
+        while (node != null) {
+            int cmp = key.compareTo(node.getData().key());
+            if (cmp > 0 || (inclusive && cmp == 0)) {
+                // node's bucket and its left subtree
+                count += countOf(node.childLeft()) + node.getData().count;
+                node = node.childRight();
+            } else {
+                node = node.childLeft();
+            }
+        }
+        return count;
+    }
+
+    private RBTNode<Bucket<T>> root() {
+        return (RBTNode<Bucket<T>>) buckets.root;
+    }
+
+    /**
+     * Returns the number of values stored in the subtree rooted at node.
+     */
+    private static int countOf(RBTNode<?> node) {
+        return node == null ? 0 : ((BucketNode<?>) node).count;
+    }
+
+    // Test Cases
+
+    /**
+     * Test 1: Stores many duplicates of a few keys.
+     * - Ensures the tree holds one node per distinct key, and counts every value.
+     * - Ensures iteration, rank, select and countInRange agree with the sorted values,
+     *   and that values sharing a key keep their insertion order.
+     */
+    @Test
+    public void testBuckets() {
+        BucketRedBlackTree<Keyed> tree = new BucketRedBlackTree<>();
+        for (int i = 0; i < 300; i++) {
+            tree.insert(new Keyed("key" + (i % 10) + "#" + i));
+        }
+        assertEquals(300, tree.size());
+        assertEquals(10, RBTNode.sizeOf(tree.root())); // one node per key
+        assertEquals(60, tree.countInRange(new Keyed("key3"), new Keyed("key4")));
+        assertEquals(90, tree.rank(new Keyed("key3")));
+        assertEquals("key3#3", tree.select(90).value);
+        assertEquals("key3#13", tree.select(91).value);
+
+        tree.setIteratorMin(new Keyed("key9"));
+        Iterator<Keyed> iterator = tree.iterator();
+        for (int i = 9; i < 300; i += 10) {
+            assertEquals("key9#" + i, iterator.next().value);
+        }
+        assertFalse(iterator.hasNext());
+
+        // New keys and existing keys added at once
+        tree.insertAll(List.of(new Keyed("key9#300"), new Keyed("keyA#301"), new Keyed("keyA#302")));
+        assertEquals(303, tree.size());
+        assertEquals(11, RBTNode.sizeOf(tree.root()));
+        assertEquals(33, tree.countInRange(new Keyed("key9"), null));
+        assertTrue(tree.contains(new Keyed("keyA")));
+        assertFalse(tree.contains(new Keyed("keyB")));
+    }
+
+    /**
+     * Test 2: Inserts and removes values in random order against a sorted list.
+     * - Ensures sizes, contents and bucket order stay correct as buckets empty and
+     *   their nodes are removed from the tree.
+     */
+    @Test
+    public void testInsertAndRemove() {
+        BucketRedBlackTree<Integer> tree = new BucketRedBlackTree<>();
+        List<Integer> expected = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            int value = random.nextInt(50);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(Integer.valueOf(value)), tree.remove(value));
+            } else {
+                tree.insert(value);
+                expected.add(value);
+            }
+        }
+        tree.insertAll(List.of(7, 7, 60, 61, 60));
+        expected.addAll(List.of(7, 7, 60, 61, 60));
+        expected.sort(null);
+
+        assertEquals(expected.size(), tree.size());
+        List<Integer> actual = new ArrayList<>();
+        tree.forEach(actual::add);
+        assertEquals(expected, actual);
+        for (int i = 0; i < expected.size(); i += 17) {
+            assertEquals(expected.get(i), tree.select(i));
+        }
+        assertEquals(expected.indexOf(60), tree.rank(60));
+    }
+
+    /**
+     * Value that compares only by the text before its '#', for the tests.
+     */
+    private static class Keyed implements Comparable<Keyed> {
+        private final String value;
+
+        private Keyed(String value) {
+            this.value = value;
+        }
+
+        private String key() {
+            int hash = value.indexOf('#');
+            return hash < 0 ? value : value.substring(0, hash);
+        }
+
+        @Override
+        public int compareTo(Keyed other) {
+            return key().compareTo(other.key());
+        }
+    }
+}
@@ -0,0 +1,305 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * This class follows a songs .csv file that keeps growing, or a directory that .csv
+ * files are dropped into, and reads only the rows added since its last read. For
+ * every file it remembers how many bytes have been read already, and rows are only
+ * read once their line break has been written, so a row that is still being
+ * appended is read in full on a later read. Files are expected to only grow: a
+ * file that is replaced by another one at the same path, which is recognised by
+ * its file key or creation time, is read again from its header, while a file
+ * that is truncated in place is only read past its new end.
+ *
+ * Reads can be made by calling readNew, or by a background thread that uses a
+ * WatchService to read as soon as a followed file is created or changed. The
+ * thread skips a file it cannot read, records the failure in the report, and
+ * tries the file again after the next change.
+ */
+public class CSVFollower implements Closeable {
+
+    // largest region of a file mapped at once
+    private static final long MAX_MAP_BYTES = Integer.MAX_VALUE;
+    // longest close waits for the thread to finish its read
+    private static final long JOIN_MILLIS = 5000;
+
+    private final Path path;
+    private final boolean directory;
+    private final Comparator<Song> comparator;
+    private final StringDictionary dictionary;
+
+    // bytes read so far, the parser for the header, and the identity of every followed file
+    private final Map<Path, Long> offsets = new HashMap<>();
+    private final Map<Path, SongCSVFormat.ByteParser> parsers = new HashMap<>();
+    private final Map<Path, Object> identities = new HashMap<>();
+    // rows read and rows skipped because they could not be parsed, over every read
+    private final LoadReport report = new LoadReport();
+
+    private WatchService watcher = null;
+    private Thread thread = null;
+
+    /**
+     * Creates a follower of a .csv file, or of every .csv file in a directory.
+     * Nothing is read until readNew or start is called.
+     *
+     * @param filename   is the name of the .csv file or directory to follow
+     * @param comparator the comparator passed to every Song created
+     */
+    public CSVFollower(String filename, Comparator<Song> comparator) {
+        this(filename, comparator, new StringDictionary());
+    }
+
+    /**
+     * Creates a follower of a .csv file, or of every .csv file in a directory, that
+     * encodes artists and genres with dictionary.
+     *
+     * @param filename   is the name of the .csv file or directory to follow
+     * @param comparator the comparator passed to every Song created
+     * @param dictionary the dictionary of artists and genres
+     */
+    public CSVFollower(String filename, Comparator<Song> comparator, StringDictionary dictionary) {
+        this.path = Path.of(filename).toAbsolutePath();
+        this.directory = Files.isDirectory(path);
+        this.comparator = comparator;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Reads the rows added to the followed files since the last read. The first
+     * read of a file reads all of its rows.
+     *
+     * @return the songs of the new rows, in file order
+     * @throws IOException when there is trouble reading a file
+     */
+    public List<Song> readNew() throws IOException {
+        return readNew(false);
+    }
+
+    /**
+     * Reads the rows added to the followed files since the last read.
+     *
+     * @param skipFailures whether a file that cannot be read is recorded in the
+     *                     report and skipped, instead of ending the read
+     * @return the songs of the new rows, in file order
+     * @throws IOException when there is trouble reading a file, or the directory
+     */
+    private synchronized List<Song> readNew(boolean skipFailures) throws IOException {
+        List<Song> songs = new ArrayList<>();
+        if (!directory) {
+            if (Files.exists(path)) {
+                readNew(path, songs, skipFailures);
+            }
+            return songs;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path, "*.csv")) {
+            for (Path file : files) {
+                readNew(file, songs, skipFailures);
+            }
+        }
+        return songs;
+    }
+
+    /**
+     * Starts a daemon thread that reads new rows whenever a followed file is created
+     * or changed, and passes each non-empty batch of songs to sink. Every row that
+     * exists when the thread starts is read before it waits for the first change.
+     *
+     * @param sink receives the songs of each read, on the follower's thread
+     * @throws IOException when the directory cannot be watched
+     * @throws IllegalStateException when the follower was started already
+     */
+    public synchronized void start(Consumer<List<Song>> sink) throws IOException {
+        if (watcher != null) {
+            throw new IllegalStateException("The follower was started already.");
+        }
+        Path watched = directory ? path : path.getParent();
+        watcher = watched.getFileSystem().newWatchService();
+        watched.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        WatchService service = watcher;
+        thread = new Thread(() -> follow(service, sink), "csv-follower");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the thread started by start, if any, and waits for it to end, so
+     * that no songs are passed to its sink once close returns.
+     *
+     * @throws IOException when there is trouble closing the WatchService
+     */
+    @Override
+    public void close() throws IOException {
+        Thread following;
+        synchronized (this) {
+            if (watcher == null) {
+                return;
+            }
+            watcher.close(); // wakes the thread, which then ends
+            following = thread;
+        }
+        // the lock is released first, since the thread takes it to finish its read
+        if (following != Thread.currentThread()) {
+            try {
+                following.join(JOIN_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Returns the report of every read so far, which lists the rows that could
+     * not be parsed and were skipped, by the position of their first byte.
+     */
+    public LoadReport getReport() {
+        return report;
+    }
+
+    /**
+     * Reads new rows until the WatchService is closed. Events only say that the
+     * directory changed, so every followed file is checked after each of them.
+     * Files that cannot be read are skipped until the next event, and so is the
+     * whole directory when it cannot be listed.
+     */
+    private void follow(WatchService service, Consumer<List<Song>> sink) {
+        try {
+            while (true) {
+                List<Song> songs;
+                try {
+                    songs = readNew(true);
+                } catch (IOException | RuntimeException e) {
+                    report.addFailedRead(path.toString(), e);
+                    songs = List.of();
+                }
+                if (!songs.isEmpty()) {
+                    sink.accept(songs);
+                }
+                WatchKey key = service.take();
+                key.pollEvents(); // the files are checked whatever the events were
+                key.reset();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // the follower was closed
+        }
+    }
+
+    /**
+     * Reads the complete rows of file past its offset, and moves the offset past
+     * them. When skipFailures is set, a failure is recorded in the report instead
+     * of thrown, and the songs of the file read before it are kept.
+     */
+    private void readNew(Path file, List<Song> songs, boolean skipFailures) throws IOException {
+        try {
+            readNew(file, songs);
+        } catch (IOException | RuntimeException e) {
+            if (!skipFailures) {
+                throw e;
+            }
+            report.addFailedRead(file.toString(), e);
+        }
+    }
+
+    /**
+     * Reads the complete rows of file past its offset, and moves the offset past
+     * them, region by region.
+     */
+    private void readNew(Path file, List<Song> songs) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            Object identity = (attributes.fileKey() != null) ? attributes.fileKey() : attributes.creationTime();
+            Object previous = identities.put(file, identity);
+            long size = channel.size();
+            long offset = offsets.getOrDefault(file, 0L);
+            if (previous != null && !previous.equals(identity)) {
+                offset = 0; // the file was replaced, so read it from the start
+                parsers.remove(file);
+            } else if (size < offset) {
+                offset = size; // rows were cut from the file, so wait for new ones past its end
+            }
+            while (offset < size) {
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                        Math.min(size - offset, MAX_MAP_BYTES));
+                int end = lastLineEnd(region);
+                if (end < 0) {
+                    break; // no complete row yet
+                }
+                int lineStart = 0;
+                SongCSVFormat.ByteParser parser = parsers.get(file);
+                if (parser == null) {
+                    // the first line of the file is its header
+                    int headerEnd = nextLineEnd(region, 0);
+                    byte[] headerBytes = new byte[headerEnd];
+                    region.get(0, headerBytes);
+                    String header = new String(headerBytes, StandardCharsets.UTF_8);
+                    parser = new SongCSVFormat(header.endsWith("\r") ? header.substring(0, headerEnd - 1) : header,
+                            dictionary).newByteParser();
+                    parsers.put(file, parser);
+                    lineStart = headerEnd + 1;
+                }
+                int loaded = songs.size();
+                while (lineStart <= end) {
+                    int lineEnd = nextLineEnd(region, lineStart);
+                    if (!SongCSVFormat.isBlank(region, lineStart, lineEnd)) {
+                        Song song = parser.tryParseSong(region, lineStart, lineEnd, comparator);
+                        if (song != null) {
+                            songs.add(song);
+                        } else {
+                            // later rows can still be read
+                            report.addRejected("byte", offset + lineStart, parser, region, lineStart, lineEnd);
+                        }
+                    }
+                    lineStart = lineEnd + 1;
+                }
+                report.addLoaded(songs.size() - loaded);
+                offset += end + 1;
+                offsets.put(file, offset); // rows read so far stay read if a later region fails
+            }
+            offsets.put(file, offset);
+        }
+    }
+
+    /**
+     * Finds the last line break of a region.
+     *
+     * @return the index of the last \n, or -1 when the region holds none
+     */
+    private static int lastLineEnd(MappedByteBuffer region) {
+        int position = region.limit() - 1;
+        while (position >= 0 && region.get(position) != '\n') {
+            position--;
+        }
+        return position;
+    }
+
+    /**
+     * Finds the end of the line starting at position.
+     *
+     * @return the index of the line's \n, or the limit of the region when none is found
+     */
+    private static int nextLineEnd(MappedByteBuffer region, int position) {
+        int limit = region.limit();
+        while (position < limit && region.get(position) != '\n') {
+            position++;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,348 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This class writes a catalog of songs to a compact binary snapshot, and reads it
+ * back by memory-mapping the file. Reading a snapshot involves no text parsing:
+ * strings are stored as length-prefixed UTF-8, and numbers as variable-length
+ * integers. Songs are written in the order of the tree they come from, which is
+ * sorted by energy, so a tree can be rebuilt from them in linear time.
+ *
+ * A snapshot starts with the magic bytes "SNGS", a format version and the number
+ * of songs. Each song is then stored as a record: the length of the record, the
+ * title, artist and genre, followed by the year, bpm, energy, danceability,
+ * loudness and liveness. Artists and genres read back are encoded with a
+ * StringDictionary, like those of a .csv file.
+ */
+public class CatalogSnapshot {
+
+    // first bytes of every snapshot file
+    private static final byte[] MAGIC = {'S', 'N', 'G', 'S'};
+    // format written by this class; files of other versions are rejected
+    public static final int VERSION = 1;
+    // magic, version and song count
+    private static final int HEADER_BYTES = MAGIC.length + 2 * Integer.BYTES;
+    // largest region of the file mapped at once
+    private static final long MAX_MAP_BYTES = Integer.MAX_VALUE;
+
+    // encodes the artists and genres of the songs read
+    private final StringDictionary dictionary;
+
+    /**
+     * Creates a snapshot reader and writer that encodes artists and genres with a
+     * dictionary of its own.
+     */
+    public CatalogSnapshot() {
+        this(new StringDictionary());
+    }
+
+    /**
+     * Creates a snapshot reader and writer that encodes the artists and genres of
+     * the songs it reads with dictionary.
+     *
+     * @param dictionary the dictionary of artists and genres
+     */
+    public CatalogSnapshot(StringDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Checks whether a file starts with the magic bytes of a snapshot.
+     *
+     * @param filename is the name of the file to check
+     * @return true if the file looks like a snapshot, false otherwise, including
+     *         when there is no such file
+     * @throws IOException when there is trouble reading the file
+     */
+    public static boolean isSnapshot(String filename) throws IOException {
+        if (!Files.isRegularFile(Paths.get(filename))) {
+            return false; // left for the .csv readers to report
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer start = ByteBuffer.allocate(MAGIC.length);
+            while (start.hasRemaining() && channel.read(start) >= 0) {
+                // keep reading until the magic bytes are in or the file ends
+            }
+            return !start.hasRemaining() && Arrays.equals(start.array(), MAGIC);
+        }
+    }
+
+    /**
+     * Writes songs to a snapshot file. The snapshot is written to a temporary file
+     * next to filename first, and then moved in its place, so that an existing
+     * snapshot is never left half written.
+     *
+     * @param filename is the name of the snapshot file
+     * @param songs    the songs to write, in the order they should be read back
+     * @param count    the number of songs
+     * @throws IOException when there is trouble writing the file
+     * @throws IllegalArgumentException when songs does not hold count songs
+     */
+    public void write(String filename, Iterable<Song> songs, int count) throws IOException {
+        Path target = Paths.get(filename).toAbsolutePath();
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.put(MAGIC).putInt(VERSION).putInt(count);
+            out.write(header.array());
+
+            RecordWriter record = new RecordWriter();
+            int written = 0;
+            for (Song song : songs) {
+                record.write(song, out);
+                written++;
+            }
+            if (written != count) {
+                throw new IllegalArgumentException("Expected " + count + " songs, but found " + written + ".");
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads the songs of a snapshot file, in the order they were written.
+     *
+     * @param filename   is the name of the snapshot file
+     * @param comparator the comparator passed to every Song created
+     * @return the songs of the snapshot
+     * @throws IOException when the file cannot be read, is not a snapshot, was
+     *                     written in another version of the format, or is truncated
+     *                     or corrupt
+     */
+    public List<Song> read(String filename, Comparator<Song> comparator) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException(filename + " is not a song snapshot.");
+            }
+            long regionStart = 0;
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAX_MAP_BYTES));
+
+            byte[] magic = new byte[MAGIC.length];
+            region.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException(filename + " is not a song snapshot.");
+            }
+            int version = region.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + filename + ".");
+            }
+            int count = region.getInt();
+            if (count < 0) {
+                throw new IOException("Snapshot " + filename + " has a negative song count.");
+            }
+            List<Song> songs = new ArrayList<>(count);
+
+            RecordReader record = new RecordReader(dictionary, filename);
+            for (int i = 0; i < count; i++) {
+                int length = peekLength(region);
+                if (length < 0 || region.position() + length > region.limit()) {
+                    if (regionStart + region.limit() == size) {
+                        throw new IOException("Snapshot " + filename + " is truncated.");
+                    }
+                    // the record continues past this region, so map the next one from its start
+                    regionStart += region.position();
+                    region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart,
+                            Math.min(size - regionStart, MAX_MAP_BYTES));
+                    length = peekLength(region);
+                    if (length < 0 || length > region.limit()) {
+                        throw new IOException("Snapshot " + filename + " is truncated.");
+                    }
+                }
+                songs.add(record.read(region, length, comparator));
+            }
+            return songs;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Snapshot " + filename + " is corrupt.", e);
+        }
+    }
+
+    /**
+     * Returns the length of the record starting at the position of region, counting
+     * its length prefix, without moving the position.
+     *
+     * @return the length of the record, or -1 when its prefix is cut off by the region
+     */
+    private static int peekLength(ByteBuffer region) {
+        int position = region.position();
+        int length = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (position >= region.limit()) {
+                return -1;
+            }
+            byte b = region.get(position++);
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return length + (position - region.position());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Encodes songs into records, reusing a single buffer for all of them.
+     */
+    private static class RecordWriter {
+        private byte[] bytes = new byte[256];
+        private int length;
+
+        private void write(Song song, OutputStream out) throws IOException {
+            length = 0;
+            writeString(song.getTitle());
+            writeString(song.getArtist());
+            writeString(song.getGenres());
+            writeInt(song.getYear());
+            writeInt(song.getBPM());
+            writeInt(song.getEnergy());
+            writeInt(song.getDanceability());
+            writeInt(song.getLoudness());
+            writeInt(song.getLiveness());
+
+            // the length goes after the body in the buffer, but is written before it
+            int body = length;
+            writeVarint(body);
+            out.write(bytes, body, length - body);
+            out.write(bytes, 0, body);
+        }
+
+        /**
+         * Writes a string as its UTF-8 length plus one (zero for null) and its bytes.
+         */
+        private void writeString(String value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length + 1);
+            ensureCapacity(utf8.length);
+            System.arraycopy(utf8, 0, bytes, length, utf8.length);
+            length += utf8.length;
+        }
+
+        /**
+         * Writes a signed int with zig-zag encoding, so small negative numbers such
+         * as loudness stay as short as small positive ones.
+         */
+        private void writeInt(int value) {
+            writeVarint((value << 1) ^ (value >> 31));
+        }
+
+        /**
+         * Writes an unsigned int in 7-bit groups, lowest first, with the high bit
+         * of every byte but the last set.
+         */
+        private void writeVarint(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+
+    /**
+     * Decodes records into songs, reusing a single buffer for their strings. Every
+     * length is checked against the bytes left in its record before it is used, so
+     * a corrupt record fails with an IOException.
+     */
+    private static class RecordReader {
+        private final StringDictionary dictionary;
+        private final String filename;
+        private byte[] scratch = new byte[256];
+        // index just after the record being read
+        private int end;
+
+        private RecordReader(StringDictionary dictionary, String filename) {
+            this.dictionary = dictionary;
+            this.filename = filename;
+        }
+
+        /**
+         * Reads the record at the position of region, which is length bytes long
+         * counting its length prefix.
+         */
+        private Song read(ByteBuffer region, int length, Comparator<Song> comparator) throws IOException {
+            end = region.position() + length;
+            readVarint(region); // length of the record, already checked by read
+            String title = readString(region);
+            String artist = readString(region);
+            String genre = readString(region);
+            int year = readInt(region);
+            int bpm = readInt(region);
+            int energy = readInt(region);
+            int danceability = readInt(region);
+            int loudness = readInt(region);
+            int liveness = readInt(region);
+            if (region.position() != end) {
+                throw corrupt();
+            }
+            if (artist == null || genre == null) {
+                return new Song(title, artist, genre, year, bpm, energy, danceability, loudness, liveness, comparator);
+            }
+            return new Song(title, dictionary.code(artist), dictionary.code(genre), dictionary, year, bpm, energy,
+                    danceability, loudness, liveness, comparator);
+        }
+
+        private String readString(ByteBuffer region) throws IOException {
+            int length = readVarint(region) - 1;
+            if (length == -1) {
+                return null;
+            }
+            if (length < 0 || length > end - region.position()) {
+                throw corrupt();
+            }
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            region.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private int readInt(ByteBuffer region) throws IOException {
+            int value = readVarint(region);
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private int readVarint(ByteBuffer region) throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35 && region.position() < end; shift += 7) {
+                byte b = region.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw corrupt(); // longer than an int, or running past the record
+        }
+
+        private IOException corrupt() {
+            return new IOException("Snapshot " + filename + " is corrupt.");
+        }
+    }
+}
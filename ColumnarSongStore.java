@@ -0,0 +1,590 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * This class stores songs in sorted order as a set of parallel columns (a struct of
+ * arrays) instead of as a tree of nodes. Each attribute of a song is copied into a
+ * primitive int[] column, or a String[] column for titles, and artists and genres
+ * are encoded into int codes with a StringDictionary, so filter scans read only the
+ * few contiguous arrays they need. No Song objects are kept: the songs returned by
+ * select and by iterators are rebuilt from their row of the columns, and share the
+ * artist and genre Strings of the dictionary.
+ *
+ * Rows are kept in order of energy, so the songs inserted must compare by energy,
+ * as the songs Backend loads do. Searches for a song, including iterator bounds,
+ * then only read the energy column, and a song is only rebuilt for a row that is
+ * returned. Other Comparable keys are compared with the songs of the rows they
+ * probe, which are rebuilt for the comparison.
+ *
+ * Inserting a single song shifts every later row, so large loads should use insertAll.
+ */
+public class ColumnarSongStore implements IterableSortedCollection<Song> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // number of rows stored, and the columns of the rows in sorted order
+    private int size = 0;
+    private Columns columns = new Columns(INITIAL_CAPACITY);
+
+    // encodes the artist and genre columns
+    private final StringDictionary dictionary = new StringDictionary();
+    // comparator of the songs inserted, given to the songs rebuilt from rows
+    private Comparator<Song> comparator = null;
+
+    // bounds for iterators, or null for none
+    private Comparable<Song> min = null;
+    private Comparable<Song> max = null;
+
+    /**
+     * Returns the dictionary that encodes the artist and genre columns. Songs loaded
+     * with this dictionary are stored with the codes they already have.
+     */
+    public StringDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Inserts a new song into the store, after any songs that compare equal to it.
+     * @param data the new song being inserted
+     * @throws NullPointerException if data argument is null
+     */
+    @Override
+    public void insert(Song data) throws NullPointerException {
+        if (data == null) {
+            throw new NullPointerException("Data cannot be null."); // Check for null input
+        }
+        comparator = data.getComparator();
+        int position = upperBound(data);
+        ensureCapacity(size + 1);
+        columns.copy(position, columns, position + 1, size - position);
+        setRow(position, data);
+        size++;
+    }
+
+    /**
+     * Inserts many songs at once. The songs are sorted once and merged into the
+     * columns in place, from the last row backwards, so that each stored row moves
+     * at most once and the rows before the first new song do not move at all. The
+     * run of stored rows that goes after each new song is found with a binary
+     * search of the energy column and moved column by column.
+     * @param songs the new songs being inserted
+     * @throws NullPointerException if songs or any of its elements is null
+     */
+    @Override
+    public void insertAll(List<Song> songs) throws NullPointerException {
+        List<Song> sorted = new ArrayList<>(songs);
+        for (Song song : sorted) {
+            if (song == null) {
+                throw new NullPointerException("Data cannot be null."); // Check for null input
+            }
+        }
+        if (sorted.isEmpty()) {
+            return;
+        }
+        sorted.sort(null);
+        ensureCapacity(size + sorted.size());
+
+        // Merge from the back, keeping stored rows before equal new songs
+        int stored = size; // stored rows that have not been moved yet
+        int row = size + sorted.size(); // first row that is already filled
+        for (int i = sorted.size() - 1; i >= 0; i--) {
+            Song song = sorted.get(i);
+            int runStart = firstEnergyAbove(song.getEnergy(), stored);
+            int run = stored - runStart;
+            row -= run;
+            columns.copy(runStart, columns, row, run);
+            stored = runStart;
+            setRow(--row, song);
+        }
+        size += sorted.size();
+        comparator = sorted.get(sorted.size() - 1).getComparator();
+    }
+
+    /**
+     * Check whether a song equal to data is stored.
+     * @param data the value to check for in the collection
+     * @return true if the collection contains data one or more times, and false otherwise
+     */
+    @Override
+    public boolean contains(Comparable<Song> data) {
+        if (data == null) {
+            return false; // Null not allowed
+        }
+        return lowerBound(data) < upperBound(data);
+    }
+
+    /**
+     * Removes the row holding a song with the same attributes as data. Rows with the
+     * energy of data are found with a binary search of the energy column, and the
+     * rows after the removed one are shifted down by one.
+     * @param data the song being removed
+     * @return true if a song was removed, false if data was not stored
+     * @throws NullPointerException if data argument is null
+     */
+    @Override
+    public boolean remove(Song data) throws NullPointerException {
+        if (data == null) {
+            throw new NullPointerException("Data cannot be null."); // Check for null input
+        }
+        for (int row = lowerBound(data), end = upperBound(data); row < end; row++) {
+            if (columns.holds(row, data, dictionary)) {
+                columns.copy(row + 1, columns, row, size - row - 1);
+                size--;
+                columns.titles[size] = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        columns = new Columns(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public void setIteratorMin(Comparable<Song> min) {
+        this.min = min;
+    }
+
+    @Override
+    public void setIteratorMax(Comparable<Song> max) {
+        this.max = max;
+    }
+
+    /**
+     * Returns an iterator over the songs from the iterator min to the iterator max,
+     * found with two binary searches. Each song is rebuilt from its row as it is
+     * returned.
+     */
+    @Override
+    public Iterator<Song> iterator() {
+        final int from = (min == null) ? 0 : lowerBound(min);
+        final int to = (max == null) ? size : upperBound(max);
+        return new Iterator<Song>() {
+            private int next = from;
+
+            @Override
+            public boolean hasNext() {
+                return next < to;
+            }
+
+            @Override
+            public Song next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("No more elements in the iterator");
+                }
+                return song(next++);
+            }
+        };
+    }
+
+    @Override
+    public int rank(Comparable<Song> key) {
+        return lowerBound(key);
+    }
+
+    @Override
+    public Song select(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return song(index);
+    }
+
+    @Override
+    public int countInRange(Comparable<Song> lo, Comparable<Song> hi) {
+        int from = (lo == null) ? 0 : lowerBound(lo);
+        int to = (hi == null) ? size : upperBound(hi);
+        return Math.max(0, to - from);
+    }
+
+    /**
+     * Finds the rows with an energy from lowEnergy to highEnergy and a danceability
+     * larger than danceabilityAbove. The rows of the energy range are found with two
+     * binary searches of the energy column, so the songs must be ordered by energy,
+     * as Backend orders them. The danceability column is then scanned over that
+     * range only, with no branches on its values, so the scan is limited by memory
+     * bandwidth rather than by branch mispredictions or pointer chasing.
+     *
+     * @param lowEnergy         the minimum energy, inclusive
+     * @param highEnergy        the maximum energy, inclusive
+     * @param danceabilityAbove the danceability each row must be larger than
+     * @return the indices of the matching rows, in sorted order
+     */
+    public int[] filter(int lowEnergy, int highEnergy, int danceabilityAbove) {
+        int from = firstEnergyAbove(lowEnergy - 1L);
+        int to = Math.max(from, firstEnergyAbove(highEnergy));
+        int[] danceability = columns.danceability;
+        int[] matches = new int[to - from];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            matches[count] = i;
+            count += (danceability[i] > danceabilityAbove) ? 1 : 0;
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * Returns the titles of the given rows.
+     * @param matches  row indices, as returned by filter
+     * @param maxCount the maximum number of titles to return
+     * @return the titles of the first maxCount rows
+     */
+    public List<String> titles(int[] matches, int maxCount) {
+        int count = Math.min(matches.length, Math.max(0, maxCount));
+        List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(columns.titles[matches[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the titles of the k most recent of the given rows, most recent first.
+     * Rows from the same year keep their sorted order. Only the year column is read.
+     * @param matches row indices, as returned by filter
+     * @param k       the maximum number of titles to return
+     * @return up to k titles in descending order of year
+     */
+    public List<String> mostRecent(int[] matches, int k) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        int[] year = columns.year;
+        int[] best = new int[k];
+        int found = 0;
+        for (int row : matches) {
+            if (found == best.length && year[row] <= year[best[found - 1]]) {
+                continue; // not more recent than the least recent row kept
+            }
+            // shift less recent rows down to make room, keeping earlier rows first on ties
+            int position = (found < best.length) ? found++ : found - 1;
+            while (position > 0 && year[best[position - 1]] < year[row]) {
+                best[position] = best[position - 1];
+                position--;
+            }
+            best[position] = row;
+        }
+        return titles(Arrays.copyOf(best, found), found);
+    }
+
+    /**
+     * Returns the artist of a row, decoded from the dictionary.
+     */
+    public String artistOf(int row) {
+        return Columns.decode(columns.artistCodes[row], dictionary);
+    }
+
+    /**
+     * Returns the genre of a row, decoded from the dictionary.
+     */
+    public String genreOf(int row) {
+        return Columns.decode(columns.genreCodes[row], dictionary);
+    }
+
+    /**
+     * Rebuilds the song stored at a row.
+     */
+    private Song song(int row) {
+        return columns.song(row, dictionary, comparator);
+    }
+
+    /**
+     * Returns the index of the first row that is not less than key. A song key is
+     * found from its energy alone.
+     */
+    private int lowerBound(Comparable<Song> key) {
+        if (key instanceof Song) {
+            return firstEnergyAbove(((Song) key).getEnergy() - 1L);
+        }
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (key.compareTo(song(mid)) > 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the index of the first row that is greater than key. A song key is
+     * found from its energy alone.
+     */
+    private int upperBound(Comparable<Song> key) {
+        if (key instanceof Song) {
+            return firstEnergyAbove(((Song) key).getEnergy());
+        }
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (key.compareTo(song(mid)) >= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the index of the first row with an energy greater than energy, reading
+     * only the energy column.
+     */
+    private int firstEnergyAbove(long energy) {
+        return firstEnergyAbove(energy, size);
+    }
+
+    /**
+     * Returns the index of the first of the rows before end with an energy greater
+     * than energy, or end when there is none.
+     */
+    private int firstEnergyAbove(long energy, int end) {
+        int[] column = columns.energy;
+        int lo = 0;
+        int hi = end;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (column[mid] <= energy) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Stores the attributes of a song in every column of the given row.
+     */
+    private void setRow(int row, Song song) {
+        columns.titles[row] = song.getTitle();
+        columns.artistCodes[row] = encode(song.getArtist(), song.getArtistCode());
+        columns.genreCodes[row] = encode(song.getGenres(), song.getGenreCode());
+        columns.energy[row] = song.getEnergy();
+        columns.danceability[row] = song.getDanceability();
+        columns.year[row] = song.getYear();
+        columns.bpm[row] = song.getBPM();
+        columns.loudness[row] = song.getLoudness();
+        columns.liveness[row] = song.getLiveness();
+    }
+
+    /**
+     * Returns the code of value in the dictionary, or -1 for null. A code the song
+     * already has is used when it is the dictionary's code for the same String.
+     */
+    private int encode(String value, int code) {
+        if (value == null) {
+            return -1;
+        }
+        if (code >= 0 && code < dictionary.size() && dictionary.value(code) == value) {
+            return code; // the song was loaded with this dictionary
+        }
+        return dictionary.code(value);
+    }
+
+    /**
+     * Grows every column, keeping the stored rows, so that it can hold capacity rows.
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= columns.titles.length) {
+            return;
+        }
+        Columns grown = new Columns(Math.max(capacity, columns.titles.length * 2));
+        columns.copy(0, grown, 0, size);
+        columns = grown;
+    }
+
+    /**
+     * The columns of the store, where entry i of every array belongs to row i.
+     */
+    private static class Columns {
+        private final String[] titles;
+        private final int[] artistCodes;
+        private final int[] genreCodes;
+        private final int[] energy;
+        private final int[] danceability;
+        private final int[] year;
+        private final int[] bpm;
+        private final int[] loudness;
+        private final int[] liveness;
+
+        private Columns(int capacity) {
+            titles = new String[capacity];
+            artistCodes = new int[capacity];
+            genreCodes = new int[capacity];
+            energy = new int[capacity];
+            danceability = new int[capacity];
+            year = new int[capacity];
+            bpm = new int[capacity];
+            loudness = new int[capacity];
+            liveness = new int[capacity];
+        }
+
+        /**
+         * Copies length rows of every column, from index from to index to of target.
+         */
+        private void copy(int from, Columns target, int to, int length) {
+            System.arraycopy(titles, from, target.titles, to, length);
+            System.arraycopy(artistCodes, from, target.artistCodes, to, length);
+            System.arraycopy(genreCodes, from, target.genreCodes, to, length);
+            System.arraycopy(energy, from, target.energy, to, length);
+            System.arraycopy(danceability, from, target.danceability, to, length);
+            System.arraycopy(year, from, target.year, to, length);
+            System.arraycopy(bpm, from, target.bpm, to, length);
+            System.arraycopy(loudness, from, target.loudness, to, length);
+            System.arraycopy(liveness, from, target.liveness, to, length);
+        }
+
+        /**
+         * Rebuilds the song of a row, decoding its artist and genre with dictionary.
+         */
+        private Song song(int row, StringDictionary dictionary, Comparator<Song> comparator) {
+            if (artistCodes[row] < 0 || genreCodes[row] < 0) {
+                return new Song(titles[row], decode(artistCodes[row], dictionary), decode(genreCodes[row], dictionary),
+                        year[row], bpm[row], energy[row], danceability[row], loudness[row], liveness[row],
+                        comparator);
+            }
+            return new Song(titles[row], artistCodes[row], genreCodes[row], dictionary, year[row], bpm[row],
+                    energy[row], danceability[row], loudness[row], liveness[row], comparator);
+        }
+
+        /**
+         * Checks whether a row holds every attribute of song, decoding its artist
+         * and genre with dictionary.
+         */
+        private boolean holds(int row, Song song, StringDictionary dictionary) {
+            return Objects.equals(titles[row], song.getTitle())
+                    && energy[row] == song.getEnergy() && danceability[row] == song.getDanceability()
+                    && year[row] == song.getYear() && bpm[row] == song.getBPM()
+                    && loudness[row] == song.getLoudness() && liveness[row] == song.getLiveness()
+                    && Objects.equals(decode(artistCodes[row], dictionary), song.getArtist())
+                    && Objects.equals(decode(genreCodes[row], dictionary), song.getGenres());
+        }
+
+        private static String decode(int code, StringDictionary dictionary) {
+            return (code < 0) ? null : dictionary.value(code);
+        }
+    }
+
+    // Test Cases
+
+    /**
+     * Creates a song ordered by energy for the tests below.
+     */
+    private static Song song(String title, String artist, int year, int energy, int danceability) {
+        return new Song(title, artist, "genre", year, 100, energy, danceability, -5, 10,
+                Comparator.comparingInt(Song::getEnergy));
+    }
+
+    /**
+     * Test 1: Ensures single inserts and bulk inserts keep the rows sorted, and that
+     * iterator bounds and order statistics use the sorted rows.
+     */
+    @Test
+    public void testSortedRows() {
+        ColumnarSongStore store = new ColumnarSongStore();
+        store.insert(song("C", "X", 2012, 30, 50));
+        store.insert(song("A", "Y", 2010, 10, 50));
+        store.insertAll(List.of(song("D", "X", 2018, 40, 50), song("B", "Y", 2019, 20, 50)));
+
+        assertEquals(4, store.size());
+        assertEquals("A", store.select(0).getTitle());
+        assertEquals("D", store.select(3).getTitle());
+        assertEquals(1, store.rank(song("", "", 0, 15, 0)));
+        assertEquals(2, store.countInRange(song("", "", 0, 15, 0), song("", "", 0, 30, 0)));
+        assertTrue(store.contains(song("", "", 0, 20, 0)));
+        assertFalse(store.contains(song("", "", 0, 25, 0)));
+        Comparable<Song> key = other -> Integer.compare(25, other.getEnergy()); // not a song
+        assertEquals(2, store.rank(key));
+        assertFalse(store.contains(key));
+        assertEquals("Y", store.artistOf(0)); // artist codes decode to the original strings
+        assertEquals("X", store.artistOf(2));
+
+        store.setIteratorMin(song("", "", 0, 20, 0));
+        store.setIteratorMax(song("", "", 0, 30, 0));
+        Iterator<Song> iterator = store.iterator();
+        assertEquals("B", iterator.next().getTitle());
+        assertEquals("C", iterator.next().getTitle());
+        assertFalse(iterator.hasNext());
+
+        // Only the song that equals the removed one is taken out of the columns
+        Song second = song("B2", "X", 2020, 20, 50);
+        store.insert(second);
+        assertTrue(store.remove(second));
+        assertFalse(store.remove(second));
+        assertEquals(4, store.size());
+        assertEquals("B", store.select(1).getTitle());
+        assertEquals("C", store.select(2).getTitle()); // rows after the removed one moved down
+
+        // New songs are merged in after the stored songs with the same energy
+        store.setIteratorMin(null);
+        store.setIteratorMax(null);
+        store.insertAll(List.of(song("C2", "X", 2001, 30, 50), song("A0", "X", 2001, 5, 50)));
+        List<String> titles = new ArrayList<>();
+        store.forEach(added -> titles.add(added.getTitle()));
+        assertEquals(List.of("A0", "A", "B", "C", "C2", "D"), titles);
+    }
+
+    /**
+     * Test 2: Ensures the column scans match the songs' attributes.
+     */
+    @Test
+    public void testColumnScans() {
+        ColumnarSongStore store = new ColumnarSongStore();
+        store.insertAll(List.of(song("A", "X", 2010, 10, 80), song("B", "X", 2019, 20, 30),
+                song("C", "X", 2012, 30, 90), song("D", "X", 2018, 40, 60), song("E", "X", 2015, 50, 70)));
+
+        int[] matches = store.filter(15, 50, 50);
+        assertEquals(List.of("C", "D", "E"), store.titles(matches, 10));
+        assertEquals(List.of("C", "D"), store.titles(matches, 2));
+        assertEquals(List.of("D", "E"), store.mostRecent(matches, 2));
+        assertEquals(List.of("B", "D", "E", "C", "A"), store.mostRecent(store.filter(0, 100, 0), 5));
+    }
+
+    /**
+     * Test 3: Ensures songs are rebuilt from their rows with the codes and Strings of
+     * a shared dictionary, and that filter only returns rows of its energy range.
+     */
+    @Test
+    public void testSharedDictionary() {
+        ColumnarSongStore store = new ColumnarSongStore();
+        StringDictionary dictionary = store.getDictionary();
+        Song loaded = new Song("A", dictionary.code("X"), dictionary.code("pop"), dictionary, 2010, 100, 10, 80,
+                -5, 10, Comparator.comparingInt(Song::getEnergy));
+        store.insertAll(List.of(loaded, song("B", "Y", 2011, 20, 80), song("C", "X", 2012, 20, 80)));
+
+        Song rebuilt = store.select(0);
+        assertEquals(loaded.getArtistCode(), rebuilt.getArtistCode());
+        assertSame(dictionary.value(loaded.getArtistCode()), rebuilt.getArtist());
+        assertEquals(-5, rebuilt.getLoudness());
+        assertSame(store.select(0).getArtist(), store.select(2).getArtist()); // one String per artist
+        assertEquals(4, dictionary.size()); // X, pop, Y and genre, with no second code for X
+        assertTrue(store.remove(song("C", "X", 2012, 20, 80))); // rows are matched by their attributes
+        assertEquals(List.of("B"), store.titles(store.filter(20, 20, 0), 10));
+        assertEquals(0, store.filter(11, 19, 0).length);
+    }
+}
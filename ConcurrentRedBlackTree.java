@@ -0,0 +1,505 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * This class wraps an IterableRedBlackTree so that it can be read and written by
+ * several threads at once. Writers take the exclusive lock of a StampedLock. Readers
+ * first read the tree without any lock, under an optimistic stamp, and only take the
+ * shared read lock when a write happened during their read and the stamp no longer
+ * validates. Readers therefore never block each other, and only wait for writers
+ * while a write is in progress.
+ *
+ * Iterator bounds are kept separately for each thread, so that one thread setting
+ * bounds does not change the iterators created by another. Iterators copy the values
+ * within their bounds out of the tree a chunk at a time, as they are consumed, so an
+ * iterator that is only partly used only copies about what it returned. Iterators
+ * are weakly consistent: values inserted or removed while an iterator is in use may
+ * or may not be returned by it, but every value stored for the whole iteration is
+ * returned once, in sorted order.
+ *
+ * @param <T> The type of data stored in the tree, must be comparable
+ */
+public class ConcurrentRedBlackTree<T extends Comparable<T>> implements IterableSortedCollection<T> {
+
+    // a red-black tree of 2^31 values is less than 64 levels deep, so a longer
+    // descent can only come from reading the tree in the middle of a rotation
+    private static final int MAX_DEPTH = 64;
+    // values an iterator copies at first, and at most, at a time
+    private static final int FIRST_CHUNK = 16;
+    private static final int MAX_CHUNK = 1024;
+
+    private final IterableRedBlackTree<T> tree = new IterableRedBlackTree<>();
+    private final StampedLock lock = new StampedLock();
+
+    // iterator bounds of each thread
+    private final ThreadLocal<Comparable<T>> min = new ThreadLocal<>();
+    private final ThreadLocal<Comparable<T>> max = new ThreadLocal<>();
+
+    /**
+     * Inserts a new data value into the tree, while holding the write lock.
+     * @param data the new value being inserted
+     * @throws NullPointerException if data argument is null
+     */
+    @Override
+    public void insert(T data) throws NullPointerException {
+        long stamp = lock.writeLock();
+        try {
+            tree.insert(data);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Inserts many values at once, while holding the write lock once for all of them.
+     * @param values the new values being inserted
+     * @throws NullPointerException if values or any of its elements is null
+     */
+    @Override
+    public void insertAll(List<T> values) throws NullPointerException {
+        long stamp = lock.writeLock();
+        try {
+            tree.insertAll(values);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes one occurrence of data from the tree, while holding the write lock.
+     * @param data the value being removed
+     * @return true if a value was removed, false if data was not in the tree
+     * @throws NullPointerException if data argument is null
+     */
+    @Override
+    public boolean remove(T data) throws NullPointerException {
+        long stamp = lock.writeLock();
+        try {
+            return tree.remove(data);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces a value of the tree with a new value, while holding the write lock,
+     * so that no reader sees the tree without either value.
+     * @param oldValue the value being replaced
+     * @param newValue the value stored in its place
+     * @return true if oldValue was replaced, false if it was not in the tree
+     * @throws NullPointerException if either argument is null
+     */
+    public boolean update(T oldValue, T newValue) throws NullPointerException {
+        long stamp = lock.writeLock();
+        try {
+            return tree.update(oldValue, newValue);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            tree.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Check whether data is stored in the tree. The tree is searched without a lock,
+     * and only searched again under the read lock when a write interfered.
+     * @param data the value to check for in the collection
+     * @return true if the collection contains data one or more times, and false otherwise
+     */
+    @Override
+    public boolean contains(Comparable<T> data) {
+        if (data == null) {
+            return false; // Null not allowed
+        }
+        return read(() -> {
+            RBTNode<T> node = (RBTNode<T>) tree.root;
+            for (int depth = 0; node != null; depth++) {
+                if (depth > MAX_DEPTH) {
+                    throw new IllegalStateException("Tree changed during the search.");
+                }
+                int comparison = data.compareTo(node.getData()); // Compare once per level
+                if (comparison == 0) {
+                    return true;
+                }
+                node = (comparison > 0) ? node.childRight() : node.childLeft();
+            }
+            return false;
+        });
+    }
+
+    @Override
+    public int size() {
+        return read(tree::size);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return read(tree::isEmpty);
+    }
+
+    @Override
+    public int rank(Comparable<T> key) {
+        return locked(() -> tree.rank(key));
+    }
+
+    @Override
+    public T select(int index) {
+        return locked(() -> tree.select(index));
+    }
+
+    @Override
+    public int countInRange(Comparable<T> lo, Comparable<T> hi) {
+        return locked(() -> tree.countInRange(lo, hi));
+    }
+
+    /**
+     * Sets the minimum value of the iterators this thread creates afterwards.
+     * @param min the minimum for iterators, or null for no minimum
+     */
+    @Override
+    public void setIteratorMin(Comparable<T> min) {
+        this.min.set(min);
+    }
+
+    /**
+     * Sets the maximum value of the iterators this thread creates afterwards.
+     * @param max the maximum for iterators, or null for no maximum
+     */
+    @Override
+    public void setIteratorMax(Comparable<T> max) {
+        this.max.set(max);
+    }
+
+    /**
+     * Returns an iterator over the values within this thread's iterator bounds, in
+     * sorted order. The values are copied out of the tree in chunks that grow as
+     * the iterator is consumed.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new ChunkIterator(min.get(), max.get());
+    }
+
+    /**
+     * Iterator that copies the values from lo to hi out of the tree a chunk at a
+     * time. Like RBTIterator, it keeps a stack of the nodes whose values are still
+     * to be returned, and never visits subtrees entirely outside of its bounds.
+     * A chunk is copied under an optimistic stamp, and copied again under the read
+     * lock when a write interferes. The stack is only reused for the next chunk
+     * while the stamp of the previous chunk still validates, meaning no write has
+     * happened since. Otherwise the iterator seeks back to the last value it
+     * copied, and skips the values equal to it that it already returned.
+     */
+    private class ChunkIterator implements Iterator<T> {
+        private final Comparable<T> lo;
+        private final Comparable<T> hi;
+
+        // the walk: nodes whose value and right subtree are still to be copied, and
+        // the subtree to copy before them
+        private final ArrayDeque<RBTNode<T>> stack = new ArrayDeque<>();
+        private RBTNode<T> node = null;
+        private boolean ended = false; // hi or the end of the tree was reached
+        private long stamp = 0; // stamp the walk was read under, or 0 when it must be rebuilt
+
+        // the values copied and not returned yet
+        private final List<T> chunk = new ArrayList<>();
+        private int next = 0;
+        private int chunkSize = FIRST_CHUNK;
+
+        // the last value copied, and the copied values that compare equal to it
+        private T last = null;
+        private final Set<T> lastRun = Collections.newSetFromMap(new IdentityHashMap<>());
+        private int lastRunCount = 0;
+        // copied values equal to last that the walk will meet again after a seek
+        private int skip = 0;
+
+        private ChunkIterator(Comparable<T> lo, Comparable<T> hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == chunk.size() && !ended) {
+                fill();
+            }
+            return next < chunk.size();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more elements in the iterator");
+            }
+            return chunk.get(next++);
+        }
+
+        /**
+         * Copies the next chunk of values, first without a lock, and then under the
+         * read lock when a write interfered.
+         */
+        private void fill() {
+            chunk.clear();
+            next = 0;
+            T lastBefore = last;
+            List<T> runBefore = new ArrayList<>(lastRun);
+            int countBefore = lastRunCount;
+
+            long optimistic = lock.tryOptimisticRead();
+            if (optimistic != 0) {
+                try {
+                    if (stamp == 0 || !lock.validate(stamp)) {
+                        seek(); // the tree changed since the walk was read
+                    }
+                    copy();
+                    if (lock.validate(optimistic)) {
+                        stamp = optimistic;
+                        chunkSize = Math.min(MAX_CHUNK, 2 * chunkSize);
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    // a write interfered with the copy, so fall back to the read lock
+                }
+            }
+
+            // Undo the copy that a write interfered with, and copy again
+            chunk.clear();
+            last = lastBefore;
+            lastRun.clear();
+            lastRun.addAll(runBefore);
+            lastRunCount = countBefore;
+            long readStamp = lock.readLock();
+            try {
+                seek();
+                copy();
+            } finally {
+                stamp = lock.tryConvertToOptimisticRead(readStamp); // releases the read lock
+            }
+            chunkSize = Math.min(MAX_CHUNK, 2 * chunkSize);
+        }
+
+        /**
+         * Rebuilds the walk from the root, starting at the last value copied, or at
+         * lo before any value was copied.
+         */
+        private void seek() {
+            stack.clear();
+            node = (RBTNode<T>) tree.root;
+            ended = false;
+            skip = lastRunCount;
+        }
+
+        /**
+         * Copies up to chunkSize values, continuing the walk.
+         * @throws IllegalStateException when the tree changes shape during the copy
+         */
+        private void copy() {
+            Comparable<T> from = (last != null) ? last : lo;
+            // every node is pushed at most once, unless a rotation is seen half way through
+            long budget = 2L * tree.size() + MAX_DEPTH;
+            while (chunk.size() < chunkSize) {
+                if (--budget < 0 || stack.size() > MAX_DEPTH) {
+                    throw new IllegalStateException("Tree changed during the copy.");
+                }
+                if (node != null) {
+                    if (from == null || from.compareTo(node.getData()) <= 0) {
+                        stack.push(node);
+                        node = node.childLeft(); // Navigate left
+                    } else {
+                        node = node.childRight(); // Skip left if below the start
+                    }
+                    continue;
+                }
+                if (stack.isEmpty() || (hi != null && hi.compareTo(stack.peek().getData()) < 0)) {
+                    ended = true; // every remaining value exceeds max
+                    return;
+                }
+                RBTNode<T> top = stack.pop();
+                node = top.childRight();
+                T value = top.getData();
+                boolean repeat = last != null && last.compareTo(value) == 0;
+                if (repeat && skip > 0 && lastRun.contains(value)) {
+                    skip--; // returned before the seek
+                    continue;
+                }
+                if (!repeat) {
+                    last = value;
+                    lastRun.clear();
+                    lastRunCount = 0;
+                    skip = 0;
+                }
+                lastRun.add(value);
+                lastRunCount++;
+                chunk.add(value);
+            }
+        }
+    }
+
+    /**
+     * Runs a read of the tree under an optimistic stamp. When a write started before
+     * the read finished, the values read may be inconsistent, or the read may even
+     * have failed, so the read is run again while holding the read lock.
+     * @param read the read to run, which must not modify the tree
+     * @return the result of a read that did not overlap any write
+     */
+    private <R> R read(Supplier<R> read) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                R result = read.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // a write interfered with the read, so fall back to the read lock
+            }
+        }
+        return locked(read);
+    }
+
+    /**
+     * Runs a read of the tree while holding the read lock.
+     * @param read the read to run, which must not modify the tree
+     * @return the result of the read
+     */
+    private <R> R locked(Supplier<R> read) {
+        long stamp = lock.readLock();
+        try {
+            return read.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Test Cases
+
+    /**
+     * Test 1: Ensures the wrapped tree behaves like an IterableRedBlackTree, with
+     * iterator bounds that only apply to the thread that set them.
+     */
+    @Test
+    public void testSingleThreaded() throws InterruptedException {
+        ConcurrentRedBlackTree<Integer> tree = new ConcurrentRedBlackTree<>();
+        tree.insertAll(List.of(5, 1, 4));
+        tree.insert(2);
+        tree.insert(3);
+        assertEquals(5, tree.size());
+        assertTrue(tree.contains(4));
+        assertFalse(tree.contains(6));
+        assertTrue(tree.remove(4));
+        assertTrue(tree.update(5, 4));
+        assertEquals(2, tree.rank(3));
+        assertEquals(4, tree.select(3));
+
+        tree.setIteratorMin(2);
+        tree.setIteratorMax(3);
+        List<Integer> bounded = new ArrayList<>();
+        tree.forEach(bounded::add);
+        assertEquals(List.of(2, 3), bounded);
+
+        // Another thread still iterates over every value
+        List<Integer> unbounded = new ArrayList<>();
+        Thread other = new Thread(() -> tree.forEach(unbounded::add));
+        other.start();
+        other.join();
+        assertEquals(List.of(1, 2, 3, 4), unbounded);
+    }
+
+    /**
+     * Test 2: Ensures readers running during inserts always see a sorted tree that
+     * holds every value inserted before the read started.
+     */
+    @Test
+    public void testReadsDuringInserts() throws InterruptedException {
+        ConcurrentRedBlackTree<Integer> tree = new ConcurrentRedBlackTree<>();
+        int n = 20000;
+        AtomicBoolean failed = new AtomicBoolean(false);
+        AtomicBoolean done = new AtomicBoolean(false);
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            readers.add(new Thread(() -> {
+                while (!done.get()) {
+                    int size = tree.size();
+                    // values are inserted in order, so all below size are present
+                    if (size > 0 && !tree.contains(size - 1)) {
+                        failed.set(true);
+                    }
+                    int previous = -1;
+                    int count = 0;
+                    for (int value : tree) {
+                        if (value != previous + 1) {
+                            failed.set(true); // a value was skipped or repeated
+                        }
+                        previous = value;
+                        count++;
+                    }
+                    if (count < size) {
+                        failed.set(true);
+                    }
+                }
+            }));
+        }
+        readers.forEach(Thread::start);
+        for (int i = 0; i < n; i++) {
+            tree.insert(i);
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertFalse(failed.get(), "A reader saw an inconsistent tree.");
+        assertEquals(n, tree.size());
+    }
+
+    /**
+     * Test 3: Ensures an iterator that is used across writes keeps its place, even
+     * in the middle of a run of equal values, and sees the writes ahead of it.
+     */
+    @Test
+    public void testIteratorAcrossWrites() {
+        ConcurrentRedBlackTree<Integer> tree = new ConcurrentRedBlackTree<>();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 900; i++) {
+            expected.add(1000 + i / 3); // above the cached Integers, so equal values are distinct objects
+        }
+        tree.insertAll(expected);
+
+        Iterator<Integer> iterator = tree.iterator();
+        List<Integer> actual = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            actual.add(iterator.next()); // the first chunk ends on the first of the 1005s
+        }
+        tree.insert(1001); // behind the iterator
+        tree.insert(1005); // equal to the last value returned
+        tree.remove(1200); // ahead of the iterator
+        tree.insert(1300);
+        iterator.forEachRemaining(actual::add);
+
+        expected.add(1005);
+        expected.remove((Integer) 1200);
+        expected.add(1300);
+        expected.sort(null);
+        assertEquals(expected, actual);
+    }
+}
@@ -112,10 +112,7 @@ public class Frontend implements FrontendInterface {
                     } else {
                         try { //Display a specific number of songs
                             int maxCount = Integer.parseInt(parts[1]);
-                            List<String> songs = backend.getRange(null, null);
-                            if (songs.size() > maxCount) {
-                                songs = songs.subList(0, maxCount); //Limit the number of songs displayed to the specified count
-                            }
+                            List<String> songs = backend.getRange(null, null, maxCount); //Only fetch the first MAX_COUNT songs from the backend
                             System.out.println("First " + maxCount + " songs:");
                             displaySongs(songs);
                         } catch (NumberFormatException e) {
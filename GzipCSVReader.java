@@ -0,0 +1,272 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class reads the songs of a gzip-compressed .csv file without writing the
+ * decompressed file to disk. A background thread decompresses the file into blocks
+ * that end on line breaks, and hands them over through a small bounded queue to
+ * the calling thread, which parses each block in place with a
+ * SongCSVFormat.ByteParser. Decompressing and parsing therefore overlap, and at
+ * most a few blocks of decompressed text are held in memory at once. Blocks are
+ * passed back to the decompressing thread once parsed, so they are reused.
+ */
+public class GzipCSVReader {
+
+    // first bytes of every gzip file
+    private static final byte[] MAGIC = {(byte) 0x1f, (byte) 0x8b};
+    // default number of decompressed bytes handed over at a time
+    private static final int BLOCK_BYTES = 1 << 20;
+    // blocks decompressed ahead of the parser, before the decompressing thread waits
+    private static final int QUEUED_BLOCKS = 4;
+    // size of the buffer of compressed bytes read from the file
+    private static final int INPUT_BUFFER_BYTES = 1 << 16;
+
+    // encodes the artists and genres of the songs read
+    private final StringDictionary dictionary;
+    private final int blockBytes;
+
+    /**
+     * Creates a reader that encodes artists and genres with a dictionary of its own.
+     */
+    public GzipCSVReader() {
+        this(new StringDictionary());
+    }
+
+    /**
+     * Creates a reader that encodes artists and genres with dictionary, so that
+     * songs of several files share their strings and codes.
+     *
+     * @param dictionary the dictionary of artists and genres
+     */
+    public GzipCSVReader(StringDictionary dictionary) {
+        this(dictionary, BLOCK_BYTES);
+    }
+
+    /**
+     * Creates a reader that hands over blockBytes decompressed bytes at a time.
+     * Blocks grow as needed to hold lines longer than blockBytes.
+     */
+    GzipCSVReader(StringDictionary dictionary, int blockBytes) {
+        this.dictionary = dictionary;
+        this.blockBytes = blockBytes;
+    }
+
+    /**
+     * Checks whether a file starts with the magic bytes of gzip.
+     *
+     * @param filename is the name of the file to check
+     * @return true if the file looks gzip-compressed, false otherwise, including
+     *         when there is no such file
+     * @throws IOException when there is trouble reading the file
+     */
+    public static boolean isGzip(String filename) throws IOException {
+        if (!Files.isRegularFile(Paths.get(filename))) {
+            return false; // left for the .csv readers to report
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer start = ByteBuffer.allocate(MAGIC.length);
+            while (start.hasRemaining() && channel.read(start) >= 0) {
+                // keep reading until the magic bytes are in or the file ends
+            }
+            return !start.hasRemaining() && Arrays.equals(start.array(), MAGIC);
+        }
+    }
+
+    /**
+     * Reads the songs of a gzip-compressed .csv file. Lines that cannot be parsed
+     * are skipped, and blank lines are ignored.
+     *
+     * @param filename   is the name of the compressed csv file to load data from
+     * @param comparator the comparator passed to every Song created
+     * @return the songs of the file, in file order
+     * @throws IOException when the file cannot be read, is not valid gzip, or
+     *         decompresses to nothing
+     */
+    public List<Song> read(String filename, Comparator<Song> comparator) throws IOException {
+        return read(filename, comparator, new LoadReport());
+    }
+
+    /**
+     * Reads the songs of a gzip-compressed .csv file. Lines that cannot be parsed
+     * are skipped and recorded in report, by line number, and blank lines are
+     * ignored.
+     *
+     * @param filename   is the name of the compressed csv file to load data from
+     * @param comparator the comparator passed to every Song created
+     * @param report     counts the lines loaded and skipped
+     * @return the songs of the file, in file order
+     * @throws IOException when the file cannot be read, is not valid gzip, or
+     *         decompresses to nothing
+     */
+    public List<Song> read(String filename, Comparator<Song> comparator, LoadReport report) throws IOException {
+        List<Song> songs = new ArrayList<>();
+        Inflater inflater = new Inflater(filename);
+        Thread thread = new Thread(inflater, "gzip-inflater");
+        thread.setDaemon(true);
+        thread.start();
+
+        try {
+            SongCSVFormat.ByteParser parser = null;
+            long lineNumber = 0;
+            for (Block block = inflater.full.take(); block.length >= 0; block = inflater.full.take()) {
+                ByteBuffer bytes = ByteBuffer.wrap(block.bytes);
+                int lineStart = 0;
+                if (parser == null) {
+                    // the first line of the file is its header
+                    int headerEnd = lineEnd(block, 0);
+                    String header = new String(block.bytes, 0, headerEnd, StandardCharsets.UTF_8);
+                    parser = new SongCSVFormat(header.endsWith("\r") ? header.substring(0, headerEnd - 1) : header,
+                            dictionary).newByteParser();
+                    lineStart = headerEnd + 1;
+                    lineNumber++;
+                }
+                while (lineStart < block.length) {
+                    int lineEnd = lineEnd(block, lineStart);
+                    lineNumber++;
+                    if (!SongCSVFormat.isBlank(bytes, lineStart, lineEnd)) {
+                        Song song = parser.tryParseSong(bytes, lineStart, lineEnd, comparator);
+                        if (song != null) {
+                            songs.add(song);
+                        } else {
+                            report.addRejected("line", lineNumber, parser, bytes, lineStart, lineEnd);
+                        }
+                    }
+                    lineStart = lineEnd + 1;
+                }
+                inflater.free.offer(block);
+            }
+            if (inflater.error != null) {
+                throw new IOException("Could not decompress " + filename + ".", inflater.error);
+            }
+            if (parser == null) {
+                throw new IOException("Empty CSV file or missing header line."); // nothing was decompressed
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + filename + ".", e);
+        } finally {
+            thread.interrupt(); // stops the inflater if parsing ended early
+        }
+        report.addLoaded(songs.size());
+        return songs;
+    }
+
+    /**
+     * Finds the end of the line starting at position.
+     *
+     * @return the index of the line's \n, or the length of the block when none is found
+     */
+    private static int lineEnd(Block block, int position) {
+        while (position < block.length && block.bytes[position] != '\n') {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Decompressed bytes handed from the inflater to the parser. A block holds
+     * only whole lines, except for the last block of a file that does not end in a
+     * line break. A length of -1 marks the end of the file.
+     */
+    private static class Block {
+        private byte[] bytes;
+        private int length;
+
+        private Block(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+    }
+
+    /**
+     * Task that decompresses a file into blocks, cutting each block after its last
+     * line break and carrying the rest of the line over to the next block.
+     */
+    private class Inflater implements Runnable {
+        private final String filename;
+        private final BlockingQueue<Block> full = new ArrayBlockingQueue<>(QUEUED_BLOCKS + 1);
+        private final BlockingQueue<Block> free = new ArrayBlockingQueue<>(QUEUED_BLOCKS + 2);
+        // the exception that ended decompression, read by the parser after the last block
+        private volatile IOException error = null;
+
+        private Inflater(String filename) {
+            this.filename = filename;
+        }
+
+        @Override
+        public void run() {
+            Block end = new Block(0);
+            end.length = -1;
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(Paths.get(filename)),
+                    INPUT_BUFFER_BYTES)) {
+                Block block = nextBlock(0);
+                while (true) {
+                    int read = in.read(block.bytes, block.length, block.bytes.length - block.length);
+                    if (read < 0) {
+                        if (block.length > 0) {
+                            full.put(block); // the last line, without a line break
+                        }
+                        break;
+                    }
+                    block.length += read;
+                    if (block.length < block.bytes.length) {
+                        continue; // fill the block before handing it over
+                    }
+                    int lastLineEnd = block.length - 1;
+                    while (lastLineEnd >= 0 && block.bytes[lastLineEnd] != '\n') {
+                        lastLineEnd--;
+                    }
+                    // the part of a line after the last line break goes to the next block
+                    int carried = block.length - (lastLineEnd + 1);
+                    // a line longer than the block doubles the next one, so that it fits in the end
+                    Block next = nextBlock(lastLineEnd < 0 ? 2 * block.bytes.length : carried + 1);
+                    System.arraycopy(block.bytes, lastLineEnd + 1, next.bytes, 0, carried);
+                    next.length = carried;
+                    block.length = lastLineEnd + 1;
+                    if (block.length > 0) {
+                        full.put(block);
+                    } else {
+                        free.offer(block); // a single line longer than the block
+                    }
+                    block = next;
+                }
+            } catch (IOException e) {
+                error = e;
+            } catch (InterruptedException e) {
+                return; // the parser stopped, so nobody waits for the end marker
+            }
+            try {
+                full.put(end);
+            } catch (InterruptedException e) {
+                // the parser stopped
+            }
+        }
+
+        /**
+         * Returns an empty block with room for at least capacity bytes, reusing a
+         * block the parser is done with when there is one.
+         */
+        private Block nextBlock(int capacity) {
+            Block block = free.poll();
+            if (block == null) {
+                block = new Block(Math.max(blockBytes, capacity));
+            } else if (block.bytes.length < capacity) {
+                block.bytes = new byte[Math.max(block.bytes.length * 2, capacity)];
+            }
+            block.length = 0;
+            return block;
+        }
+    }
+}
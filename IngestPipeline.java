@@ -0,0 +1,526 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class loads a songs .csv file in three stages that run at the same time: a
+ * reader thread cuts the file into blocks of whole lines, a pool of parse workers
+ * turns each block into a batch of songs, and the calling thread writes the batches
+ * into the tree. The stages are connected by bounded queues, so a stage that falls
+ * behind makes the stages before it wait instead of filling memory, and a load
+ * takes about as long as its slowest stage rather than the sum of all of them.
+ * Gzip-compressed files are decompressed by the reader stage.
+ *
+ * Each stage counts the batches, rows and bytes it handled, the time it spent
+ * working and the time it spent waiting on its queues, so the slowest stage of a
+ * load can be found from getCounters.
+ */
+public class IngestPipeline {
+
+    // number of bytes of the file handed to a parse worker at a time
+    private static final int BLOCK_BYTES = 256 * 1024;
+    // blocks, and batches, that can wait in a queue per parse worker
+    private static final int QUEUED_PER_WORKER = 2;
+    // size of the buffer of bytes read from the file
+    private static final int INPUT_BUFFER_BYTES = 1 << 16;
+    // fewest songs the writer passes to the tree at once
+    private static final int MIN_WRITE_ROWS = 1 << 14;
+
+    private final int workers;
+    // encodes the artists and genres of the songs read, shared by every worker
+    private final StringDictionary dictionary;
+
+    private final StageCounters readerCounters = new StageCounters("reader");
+    private final StageCounters parserCounters = new StageCounters("parser");
+    private final StageCounters writerCounters = new StageCounters("writer");
+
+    /**
+     * Creates a pipeline that parses files on the given number of workers.
+     *
+     * @param workers    the number of threads used to parse a file
+     * @param dictionary the dictionary of artists and genres
+     * @throws IllegalArgumentException when workers is less than one
+     */
+    public IngestPipeline(int workers, StringDictionary dictionary) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1.");
+        }
+        this.workers = workers;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Loads the songs of a .csv file, which may be gzip-compressed, and passes them
+     * to writer on the calling thread. Each batch passed to writer is sorted, and
+     * batches are passed in file order, so songs with the same key keep the order
+     * of the file. Batches grow with the number of songs written, so that a writer
+     * that rebuilds its tree for each batch copies every song only a few times.
+     * Lines that cannot be parsed are skipped and recorded in report, by the
+     * position of their first byte in the decompressed file, and blank lines are
+     * ignored.
+     *
+     * @param filename   is the name of the csv file to load data from
+     * @param comparator the comparator passed to every Song created
+     * @param report     counts the lines loaded and skipped
+     * @param writer     receives the songs, and is only called on the calling thread
+     * @throws IOException when the file cannot be read or decompressed
+     */
+    public void load(String filename, Comparator<Song> comparator, LoadReport report,
+                     Consumer<List<Song>> writer) throws IOException {
+        boolean gzip = GzipCSVReader.isGzip(filename);
+        Load load;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(filename)),
+                INPUT_BUFFER_BYTES)) {
+            InputStream text = gzip ? new GZIPInputStream(in, INPUT_BUFFER_BYTES) : in;
+            // Read the header line to understand the column order
+            byte[] headerLine = readLine(text);
+            SongCSVFormat format = new SongCSVFormat(decodeHeader(headerLine), dictionary);
+
+            load = new Load(text, headerLine.length);
+            load.start(format, comparator);
+            try {
+                write(load, report, writer);
+            } finally {
+                load.finish(); // stops the other stages if writing ended early, before in is closed
+            }
+        }
+        if (load.error != null) {
+            throw new IOException("Could not read " + filename + ".", load.error);
+        }
+    }
+
+    /**
+     * Returns the counters of the reader, parser and writer stages, over every
+     * load of this pipeline.
+     */
+    public List<StageCounters> getCounters() {
+        return List.of(readerCounters, parserCounters, writerCounters);
+    }
+
+    /**
+     * Reads the first line of the file, with its line break.
+     *
+     * @return the bytes of the line, which are none when the file is empty
+     */
+    private static byte[] readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b = in.read();
+        while (b >= 0) {
+            line.write(b);
+            if (b == '\n') {
+                break;
+            }
+            b = in.read();
+        }
+        return line.toByteArray();
+    }
+
+    /**
+     * Decodes the header line, without its line break.
+     *
+     * @return the header line, or null when the file is empty
+     */
+    private static String decodeHeader(byte[] headerLine) {
+        if (headerLine.length == 0) {
+            return null;
+        }
+        String header = new String(headerLine, StandardCharsets.UTF_8);
+        if (header.endsWith("\n")) {
+            header = header.substring(0, header.length() - 1);
+        }
+        return header.endsWith("\r") ? header.substring(0, header.length() - 1) : header;
+    }
+
+    /**
+     * Takes the batches of the parse workers, puts them back in file order, and
+     * passes them to writer. Batches are held back until they add up to the songs
+     * written so far, which keeps the cost of rebuilding a tree for each of them
+     * proportional to the size of the file.
+     */
+    private void write(Load load, LoadReport report, Consumer<List<Song>> writer) throws IOException {
+        Map<Long, Batch> early = new HashMap<>(); // batches that overtook an earlier one
+        List<Batch> pending = new ArrayList<>();
+        long next = 0;
+        long pendingRows = 0;
+        long written = 0;
+        int finished = 0;
+        try {
+            while (finished < workers) {
+                long waitStart = System.nanoTime();
+                Batch batch = load.batches.take();
+                long start = System.nanoTime();
+                writerCounters.waitNanos.add(start - waitStart);
+                if (batch.sequence < 0) {
+                    finished++;
+                    continue;
+                }
+                early.put(batch.sequence, batch);
+                for (batch = early.remove(next); batch != null; batch = early.remove(++next)) {
+                    writerCounters.batches.increment();
+                    report.addLoaded(batch.songs.size());
+                    if (batch.report != null) {
+                        report.merge(batch.report);
+                    }
+                    pending.add(batch);
+                    pendingRows += batch.songs.size();
+                }
+                if (pendingRows >= Math.max(MIN_WRITE_ROWS, written)) {
+                    written += flush(pending, pendingRows, writer);
+                    pendingRows = 0;
+                }
+                writerCounters.busyNanos.add(System.nanoTime() - start);
+            }
+            long start = System.nanoTime();
+            flush(pending, pendingRows, writer);
+            writerCounters.busyNanos.add(System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            if (load.error == null) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading.", e);
+            }
+            // another stage failed, and load reports its exception
+        }
+    }
+
+    /**
+     * Passes the songs of the pending batches to writer as a single list, and
+     * empties pending.
+     *
+     * @return the number of songs passed to writer
+     */
+    private long flush(List<Batch> pending, long rows, Consumer<List<Song>> writer) {
+        if (rows == 0) {
+            return 0;
+        }
+        List<Song> songs = new ArrayList<>((int) rows);
+        for (Batch batch : pending) {
+            songs.addAll(batch.songs);
+        }
+        pending.clear();
+        writer.accept(songs);
+        writerCounters.rows.add(rows);
+        return rows;
+    }
+
+    /**
+     * Decompressed bytes of whole lines, cut from the file by the reader. A
+     * negative sequence number tells a parse worker that the file has ended.
+     */
+    private static class Block {
+        private final long sequence;
+        private final long offset; // position of the first byte in the file
+        private final byte[] bytes;
+        private int length;
+
+        private Block(long sequence, long offset, byte[] bytes) {
+            this.sequence = sequence;
+            this.offset = offset;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * The songs parsed from a block, sorted, and the report of the block's rejected
+     * lines, which is only created when there are some. A negative sequence number
+     * tells the writer that a parse worker has finished.
+     */
+    private static class Batch {
+        private final long sequence;
+        private final List<Song> songs;
+        private LoadReport report = null;
+
+        private Batch(long sequence, List<Song> songs) {
+            this.sequence = sequence;
+            this.songs = songs;
+        }
+    }
+
+    /**
+     * The queues and threads of a single load. Loads are created on the thread that
+     * writes their batches.
+     */
+    private class Load {
+        private final InputStream in;
+        private final long headerBytes;
+        private final BlockingQueue<Block> blocks = new ArrayBlockingQueue<>(QUEUED_PER_WORKER * workers);
+        private final BlockingQueue<Batch> batches = new ArrayBlockingQueue<>(QUEUED_PER_WORKER * workers);
+        private final List<Thread> threads = new ArrayList<>();
+        private final Thread writer = Thread.currentThread();
+        // the exception that ended the load early, reported once the writer is done
+        private volatile Exception error = null;
+        // whether the writer is still in write, and whether fail interrupted it, guarded by this
+        private boolean writing = true;
+        private boolean writerInterrupted = false;
+
+        private Load(InputStream in, long headerBytes) {
+            this.in = in;
+            this.headerBytes = headerBytes;
+        }
+
+        private void start(SongCSVFormat format, Comparator<Song> comparator) {
+            threads.add(new Thread(this::read, "ingest-reader"));
+            for (int i = 0; i < workers; i++) {
+                threads.add(new Thread(() -> parse(format.newByteParser(), comparator), "ingest-parser-" + i));
+            }
+            for (Thread thread : threads) {
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        private void stop() {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+        }
+
+        /**
+         * Ends the load once the writer has left write: stops the other stages and
+         * waits for their threads to end. No stage is then still reading the file
+         * when it is closed, and none can interrupt the writer after load returned.
+         * An interrupt of the writer by fail that write did not take is cleared.
+         */
+        private void finish() {
+            boolean interrupted;
+            synchronized (this) {
+                writing = false;
+                interrupted = Thread.interrupted() && !writerInterrupted;
+            }
+            stop();
+            for (Thread thread : threads) {
+                while (thread.isAlive()) {
+                    try {
+                        thread.join();
+                    } catch (InterruptedException e) {
+                        interrupted = true; // keep waiting, and restore the interrupt afterwards
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Reads the file into blocks, cutting each block after its last line break
+         * and carrying the rest of the line over to the next block, and ends with
+         * one end marker for each parse worker.
+         */
+        private void read() {
+            long sequence = 0;
+            long offset = headerBytes;
+            readerCounters.bytes.add(headerBytes);
+            try {
+                Block block = new Block(sequence++, offset, new byte[BLOCK_BYTES]);
+                long start = System.nanoTime();
+                while (true) {
+                    int read = in.read(block.bytes, block.length, block.bytes.length - block.length);
+                    if (read < 0) {
+                        if (block.length > 0) {
+                            put(block, start); // the last line, without a line break
+                        }
+                        break;
+                    }
+                    block.length += read;
+                    if (block.length < block.bytes.length) {
+                        continue; // fill the block before handing it over
+                    }
+                    int lastLineEnd = block.length - 1;
+                    while (lastLineEnd >= 0 && block.bytes[lastLineEnd] != '\n') {
+                        lastLineEnd--;
+                    }
+                    if (lastLineEnd < 0) {
+                        // a single line longer than the block, so make room for the rest of it
+                        Block larger = new Block(block.sequence, offset, new byte[2 * block.bytes.length]);
+                        System.arraycopy(block.bytes, 0, larger.bytes, 0, block.length);
+                        larger.length = block.length;
+                        block = larger;
+                        continue;
+                    }
+                    // the part of a line after the last line break goes to the next block
+                    int carried = block.length - (lastLineEnd + 1);
+                    block.length = lastLineEnd + 1;
+                    offset += block.length;
+                    Block next = new Block(sequence++, offset, new byte[Math.max(BLOCK_BYTES, 2 * carried)]);
+                    System.arraycopy(block.bytes, block.length, next.bytes, 0, carried);
+                    next.length = carried;
+                    put(block, start);
+                    block = next;
+                    start = System.nanoTime();
+                }
+                for (int i = 0; i < workers; i++) {
+                    blocks.put(new Block(-1, offset, null));
+                }
+            } catch (IOException e) {
+                fail(e);
+            } catch (InterruptedException e) {
+                // the load was stopped
+            }
+        }
+
+        private void put(Block block, long start) throws InterruptedException {
+            long waitStart = System.nanoTime();
+            readerCounters.busyNanos.add(waitStart - start);
+            readerCounters.batches.increment();
+            readerCounters.bytes.add(block.length);
+            blocks.put(block);
+            readerCounters.waitNanos.add(System.nanoTime() - waitStart);
+        }
+
+        /**
+         * Parses blocks into sorted batches until an end marker is taken, and then
+         * passes the end marker on to the writer.
+         */
+        private void parse(SongCSVFormat.ByteParser parser, Comparator<Song> comparator) {
+            try {
+                while (true) {
+                    long waitStart = System.nanoTime();
+                    Block block = blocks.take();
+                    long start = System.nanoTime();
+                    parserCounters.waitNanos.add(start - waitStart);
+                    if (block.sequence < 0) {
+                        break;
+                    }
+                    Batch batch = parse(parser, block, comparator);
+                    long end = System.nanoTime();
+                    parserCounters.busyNanos.add(end - start);
+                    parserCounters.batches.increment();
+                    parserCounters.rows.add(batch.songs.size());
+                    parserCounters.bytes.add(block.length);
+                    batches.put(batch);
+                    parserCounters.waitNanos.add(System.nanoTime() - end);
+                }
+                batches.put(new Batch(-1, null));
+            } catch (InterruptedException e) {
+                // the load was stopped
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        private Batch parse(SongCSVFormat.ByteParser parser, Block block, Comparator<Song> comparator) {
+            Batch batch = new Batch(block.sequence, new ArrayList<>());
+            ByteBuffer bytes = ByteBuffer.wrap(block.bytes);
+            int lineStart = 0;
+            while (lineStart < block.length) {
+                int lineEnd = lineStart;
+                while (lineEnd < block.length && block.bytes[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+                if (!SongCSVFormat.isBlank(bytes, lineStart, lineEnd)) {
+                    Song song = parser.tryParseSong(bytes, lineStart, lineEnd, comparator);
+                    if (song != null) {
+                        batch.songs.add(song);
+                    } else {
+                        if (batch.report == null) {
+                            batch.report = new LoadReport();
+                        }
+                        batch.report.addRejected("byte", block.offset + lineStart, parser, bytes, lineStart, lineEnd);
+                    }
+                }
+                lineStart = lineEnd + 1;
+            }
+            // sorting here spreads the work of ordering the songs over the workers
+            batch.songs.sort(null);
+            return batch;
+        }
+
+        /**
+         * Records the first exception of the load, and stops every stage,
+         * including the writer while it is still in write.
+         */
+        private void fail(Exception e) {
+            synchronized (this) {
+                if (error != null) {
+                    return;
+                }
+                error = e;
+                if (writing) {
+                    writerInterrupted = true;
+                    writer.interrupt();
+                }
+            }
+            stop();
+        }
+    }
+
+    /**
+     * Counts the work done by one stage of the pipeline. The counters are updated
+     * by the stage's threads and can be read at any time.
+     */
+    public static class StageCounters {
+        private final String name;
+        private final LongAdder batches = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+
+        private StageCounters(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the number of blocks, or batches, the stage handed on.
+         */
+        public long getBatches() {
+            return batches.sum();
+        }
+
+        /**
+         * Returns the number of songs the stage handed on, or 0 for the reader,
+         * which does not count lines.
+         */
+        public long getRows() {
+            return rows.sum();
+        }
+
+        /**
+         * Returns the number of bytes of the decompressed file the stage handled,
+         * or 0 for the writer.
+         */
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        /**
+         * Returns the time the stage's threads spent working, added over all of them.
+         */
+        public long getBusyNanos() {
+            return busyNanos.sum();
+        }
+
+        /**
+         * Returns the time the stage's threads spent waiting for the stage before
+         * them, or for room in the queue to the stage after them.
+         */
+        public long getWaitNanos() {
+            return waitNanos.sum();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d batches, %d rows, %d bytes, busy %d ms, waiting %d ms", name,
+                    getBatches(), getRows(), getBytes(), getBusyNanos() / 1_000_000, getWaitNanos() / 1_000_000);
+        }
+    }
+}
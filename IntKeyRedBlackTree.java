@@ -0,0 +1,216 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ToIntFunction;
+
+/**
+ * This class is an array-backed red-black tree whose values are ordered by an int
+ * key, such as the energy of a song. The key of each value is extracted once, when
+ * the value is inserted, and stored in an int[] next to the other node arrays. Inserts,
+ * removals and the key-based searches of this class then compare those ints directly,
+ * instead of calling compareTo (and through it a Comparator and a getter) at every
+ * node they visit.
+ *
+ * The key function must agree with the values' natural ordering: values with smaller
+ * keys compare as smaller, and values with equal keys compare as equal. Methods that
+ * take a Comparable bound, such as setIteratorMin, still compare with compareTo.
+ *
+ * @param <T> The type of data stored in the tree, must be comparable
+ */
+public class IntKeyRedBlackTree<T extends Comparable<T>> extends ArrayRedBlackTree<T> {
+
+    private final ToIntFunction<T> keyOf;
+    // the key of the value stored in each node
+    private int[] keys = new int[values.length];
+
+    /**
+     * Creates an empty tree that orders its values by the given key.
+     * @param keyOf extracts the sort key of a value, for example Song::getEnergy
+     */
+    public IntKeyRedBlackTree(ToIntFunction<T> keyOf) {
+        this.keyOf = keyOf;
+    }
+
+    /**
+     * Inserts a new data value into the tree, comparing its key with the stored keys
+     * on the way down. The red-black properties are then enforced.
+     * @param data the new value being inserted
+     * @throws NullPointerException if data argument is null
+     */
+    @Override
+    public void insert(T data) throws NullPointerException {
+        if (data == null) {
+            throw new NullPointerException("Data cannot be null."); // Check for null input
+        }
+        int node = newNode(data, true);
+        if (root == NIL) {
+            root = node;
+            setRed(root, false); // Root is always black
+            return;
+        }
+
+        // Descend to the new node's position, counting it in every subtree on the way
+        int key = keys[node];
+        int current = root;
+        while (true) {
+            sizes[current]++;
+            if (key > keys[current]) {
+                if (rights[current] == NIL) {
+                    rights[current] = node;
+                    break;
+                }
+                current = rights[current];
+            } else {
+                if (lefts[current] == NIL) {
+                    lefts[current] = node;
+                    break;
+                }
+                current = lefts[current];
+            }
+        }
+        parents[node] = current;
+        ensureRedProperty(node);
+        setRed(root, false); // Ensure the root is black after all repairs
+    }
+
+    /**
+     * Check whether a value with the given key is stored in the tree.
+     * @param key the key to look for
+     * @return true if at least one value has that key
+     */
+    public boolean containsKey(int key) {
+        int node = root;
+        while (node != NIL && keys[node] != key) {
+            node = (key > keys[node]) ? rights[node] : lefts[node];
+        }
+        return node != NIL;
+    }
+
+    /**
+     * Counts the values whose keys lie between lo and hi, inclusive.
+     * @param lo the smallest key to count
+     * @param hi the largest key to count
+     * @return the number of values with keys from lo to hi
+     */
+    public int countInRange(int lo, int hi) {
+        if (lo > hi) {
+            return 0;
+        }
+        return countBelow(hi, true) - countBelow(lo, false);
+    }
+
+    /**
+     * Returns an iterator over the values whose keys lie between lo and hi, inclusive,
+     * in sorted order. The iterator finds its first node with a single descent, and
+     * then follows parent links from each node to the next, so it needs no stack.
+     * @param lo the smallest key to return
+     * @param hi the largest key to return
+     * @return an iterator over the values with keys from lo to hi
+     */
+    public Iterator<T> iterator(int lo, int hi) {
+        return new KeyRangeIterator(firstAtLeast(lo), hi);
+    }
+
+    /**
+     * Iterator over the nodes from a first node until the first key above a maximum.
+     */
+    private class KeyRangeIterator implements Iterator<T> {
+        private int next;
+        private final int hi;
+
+        private KeyRangeIterator(int first, int hi) {
+            this.next = first;
+            this.hi = hi;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != NIL && keys[next] <= hi;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more elements in the iterator");
+            }
+            int node = next;
+            next = successor(node);
+            return value(node);
+        }
+    }
+
+    /**
+     * Finds the node storing data by its key, looking through every node with that
+     * key for one whose value equals() data.
+     */
+    @Override
+    protected int findNode(T data) {
+        int key = keyOf.applyAsInt(data);
+        for (int node = firstAtLeast(key); node != NIL && keys[node] == key; node = successor(node)) {
+            if (data.equals(values[node])) {
+                return node;
+            }
+        }
+        return NIL;
+    }
+
+    /**
+     * Returns the first node, in sorted order, whose key is at least key.
+     * @return that node, or NIL when every key is smaller
+     */
+    private int firstAtLeast(int key) {
+        int first = NIL;
+        int node = root;
+        while (node != NIL) {
+            if (keys[node] >= key) {
+                first = node;
+                node = lefts[node];
+            } else {
+                node = rights[node];
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Counts the values whose keys are less than key (or less than or equal to key
+     * when inclusive is true) with a single descent from the root.
+     */
+    private int countBelow(int key, boolean inclusive) {
+        int below = 0;
+        int node = root;
+        while (node != NIL) {
+            if (keys[node] < key || (inclusive && keys[node] == key)) {
+                below += sizeOf(lefts[node]) + 1; // node and its left subtree
+                node = rights[node];
+            } else {
+                node = lefts[node];
+            }
+        }
+        return below;
+    }
+
+    /**
+     * Stores a value in the next free slot, along with its key.
+     */
+    @Override
+    protected int newNode(T data, boolean red) {
+        int node = super.newNode(data, red);
+        keys[node] = keyOf.applyAsInt(data);
+        return node;
+    }
+
+    @Override
+    protected void copyValue(int from, int to) {
+        super.copyValue(from, to);
+        keys[to] = keys[from];
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+        super.ensureCapacity(capacity);
+        if (keys.length < values.length) {
+            keys = Arrays.copyOf(keys, values.length);
+        }
+    }
+}
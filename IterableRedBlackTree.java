@@ -1,9 +1,15 @@
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Assertions;
 import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Stack;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * This class extends RedBlackTree into a tree that supports iterating over the values it
@@ -58,16 +64,100 @@ public class IterableRedBlackTree<T extends Comparable<T>>
     }
 
 
+    /**
+     * Returns a spliterator over the values within the current iterator bounds, in
+     * sorted order. It reports its exact size, and splits at the middle of its range,
+     * which is found with a descent that uses the subtree sizes. Streams of this tree
+     * can therefore be split evenly across threads.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        int from = (min == null) ? 0 : rank(min);
+        int to = (max == null) ? size() : countInRange(null, max);
+        return new RBTSpliterator(from, Math.max(from, to));
+    }
+
+    /**
+     * Spliterator over the values at positions from index up to, but not including,
+     * end in the sorted order of this tree. The node at index is only looked up when
+     * the first value is needed, and later nodes are reached through parent links.
+     */
+    private class RBTSpliterator implements Spliterator<T> {
+
+        private int index; // position of the next value
+        private final int end; // position after the last value
+        private RBTNode<T> next = null; // node at index, or null when not yet found
+
+        private RBTSpliterator(int index, int end) {
+            this.index = index;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (index >= end) {
+                return false;
+            }
+            if (next == null) {
+                next = selectNode(index);
+            }
+            action.accept(next.getData());
+            next = successor(next);
+            index++;
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            while (tryAdvance(action)) {
+                // every value is passed to action by tryAdvance
+            }
+        }
+
+        /**
+         * Hands the first half of the remaining values to a new spliterator, and
+         * keeps the second half.
+         */
+        @Override
+        public Spliterator<T> trySplit() {
+            int middle = (index + end) >>> 1;
+            if (middle <= index) {
+                return null; // a single value cannot be split
+            }
+            RBTSpliterator prefix = new RBTSpliterator(index, middle);
+            prefix.next = next;
+            index = middle;
+            next = null;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | SIZED | SUBSIZED | NONNULL;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return null; // values are sorted in their natural ordering
+        }
+    }
+
     /**
      * Nested class for Iterator objects created for this tree and returned by the iterator method.
      * This iterator follows an in-order traversal of the tree and returns the values in sorted,
-     * ascending order.
+     * ascending order. It finds the first value within its bounds with a single descent from
+     * the root, and then moves from each node to the next through the nodes' parent links, so
+     * it keeps no stack and allocates nothing while iterating.
      */
     protected static class RBTIterator<R extends Comparable<R>> implements Iterator<R> {
 
-        private final R min; // Minimum boundary
         private final R max; // Maximum boundary
-        private final Stack<RBTNode<R>> stack = new Stack<>();
+        private RBTNode<R> next; // Node holding the next value, or null when done
 
         /**
          * Constructor for a new iterator of the tree.
@@ -77,28 +167,39 @@ public class IterableRedBlackTree<T extends Comparable<T>>
          * @param max  the maximum value that the iterator will return
          */
         public RBTIterator(RBTNode<R> root, R min, R max) {
-            this.min = min;
             this.max = max;
-            buildStackHelper(root);
+            this.next = withinMax(firstAtLeast(root, min));
         }
 
         /**
-         * Helper method to initialize the stack with an in-order traversal.
-         * Pushes leftmost nodes onto the stack first.
+         * Finds the first node, in sorted order, whose value is not below min.
          *
-         * @param node the root of the tree or subtree being processed
+         * @param node the root of the tree or subtree being searched
+         * @param min  the minimum value, or null for no minimum
+         * @return the first node not below min, or null if there is none
          */
-        private void buildStackHelper(RBTNode<R> node) {
+        private static <R extends Comparable<R>> RBTNode<R> firstAtLeast(RBTNode<R> node, R min) {
+            RBTNode<R> first = null;
             while (node != null) {
                 if (min == null || node.getData().compareTo(min) >= 0) {
-                    if (max == null || node.getData().compareTo(max) <= 0) {
-                        stack.push(node); // Push only if within range
-                    }
+                    first = node;
                     node = node.childLeft(); // Navigate left
                 } else {
                     node = node.childRight(); // Skip left if below min
                 }
             }
+            return first;
+        }
+
+        /**
+         * Returns node, or null when its value exceeds max, so every value is compared
+         * with max only once.
+         */
+        private RBTNode<R> withinMax(RBTNode<R> node) {
+            if (node != null && max != null && node.getData().compareTo(max) > 0) {
+                return null;
+            }
+            return node;
         }
 
         /**
@@ -108,13 +209,9 @@ public class IterableRedBlackTree<T extends Comparable<T>>
          */
         @Override
         public boolean hasNext() {
-            while (!stack.isEmpty() && max != null && stack.peek().getData().compareTo(max) > 0) {
-                stack.pop(); // Remove values that exceed max
-            }
-            return !stack.isEmpty();
+            return next != null;
         }
 
-
         /**
          * Returns the next value of the iterator.
          *
@@ -123,24 +220,12 @@ public class IterableRedBlackTree<T extends Comparable<T>>
          */
         @Override
         public R next() {
-            if (!hasNext()) {
+            if (next == null) {
                 throw new NoSuchElementException("No more elements in the iterator");
             }
-
-            RBTNode<R> node = stack.pop();
-            R nextValue = node.getData();
-
-            // Push right subtree nodes (leftmost path) onto the stack
-            if (node.childRight() != null) {
-                buildStackHelper(node.childRight());
-            }
-
-            // Ensure returned value is within max boundary
-            if (max != null && nextValue.compareTo(max) > 0) {
-                throw new NoSuchElementException("Exceeded max limit of iterator");
-            }
-
-            return nextValue;
+            RBTNode<R> node = next;
+            next = withinMax(successor(node));
+            return node.getData();
         }
     }
 
@@ -237,5 +322,112 @@ public class IterableRedBlackTree<T extends Comparable<T>>
         }
     }
 
-}
+    /**
+     * Test 4: Checks the order-statistic queries kept up to date by insert and rotations.
+     * - Inserts integers (including duplicates) in an order that triggers rotations.
+     * - Ensures size, rank, select and countInRange agree with the sorted order.
+     */
+    @Test
+    public void testOrderStatistics() {
+        IterableRedBlackTree<Integer> tree = new IterableRedBlackTree<>();
+
+        // Insert values (with duplicates)
+        int[] values = {50, 40, 30, 20, 10, 60, 70, 30, 30, 80};
+        for (int value : values) {
+            tree.insert(value);
+        }
 
+        // Expected sorted order: [10, 20, 30, 30, 30, 40, 50, 60, 70, 80]
+        int[] expectedOrder = {10, 20, 30, 30, 30, 40, 50, 60, 70, 80};
+        assertEquals(expectedOrder.length, tree.size());
+        for (int i = 0; i < expectedOrder.length; i++) {
+            assertEquals(expectedOrder[i], tree.select(i));
+        }
+
+        assertEquals(0, tree.rank(10));
+        assertEquals(2, tree.rank(30)); // duplicates of the key are not counted
+        assertEquals(5, tree.rank(35));
+        assertEquals(10, tree.rank(100));
+
+        assertEquals(4, tree.countInRange(30, 40));
+        assertEquals(5, tree.countInRange(null, 30));
+        assertEquals(3, tree.countInRange(60, null));
+        assertEquals(0, tree.countInRange(31, 39));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.select(10));
+    }
+
+    /**
+     * Test 5: Iterates over a large integer tree with duplicates within many bounds.
+     * - Inserts and removes values, so the parent links are changed by rotations.
+     * - Ensures every bounded iteration matches the sorted values within its bounds.
+     */
+    @Test
+    public void testBoundedIterationAfterRemovals() {
+        IterableRedBlackTree<Integer> tree = new IterableRedBlackTree<>();
+        List<Integer> sorted = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            int value = (i * 37) % 101; // every value 0..100 appears about five times
+            tree.insert(value);
+            sorted.add(value);
+        }
+        for (int value = 0; value < 101; value += 3) {
+            assertTrue(tree.remove(value));
+            sorted.remove(Integer.valueOf(value));
+        }
+        Collections.sort(sorted);
+
+        Integer[][] bounds = {{null, null}, {10, 20}, {-5, 3}, {99, null}, {null, 0}, {50, 50}, {60, 40}};
+        for (Integer[] bound : bounds) {
+            tree.setIteratorMin(bound[0]);
+            tree.setIteratorMax(bound[1]);
+            Iterator<Integer> iterator = tree.iterator();
+            for (int value : sorted) {
+                if ((bound[0] == null || value >= bound[0]) && (bound[1] == null || value <= bound[1])) {
+                    assertTrue(iterator.hasNext());
+                    assertEquals(value, iterator.next());
+                }
+            }
+            assertFalse(iterator.hasNext());
+            assertThrows(NoSuchElementException.class, iterator::next);
+        }
+    }
+
+    /**
+     * Test 6: Streams an integer tree with and without iterator bounds.
+     * - Ensures sequential and parallel streams see the values within the bounds in order.
+     * - Ensures the spliterator reports exact sizes that add up across splits.
+     */
+    @Test
+    public void testStreams() {
+        IterableRedBlackTree<Integer> tree = new IterableRedBlackTree<>();
+        List<Integer> sorted = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int value = (i * 7) % 250; // every value 0..249 appears four times
+            tree.insert(value);
+            sorted.add(value);
+        }
+        Collections.sort(sorted);
+
+        assertEquals(sorted, tree.stream().collect(Collectors.toList()));
+        assertEquals(sorted, tree.parallelStream().collect(Collectors.toList()));
+        long sum = sorted.stream().mapToLong(Integer::longValue).sum();
+        assertEquals(sum, tree.parallelStream().mapToLong(Integer::longValue).sum());
+
+        tree.setIteratorMin(100);
+        tree.setIteratorMax(109);
+        assertEquals(40, tree.parallelStream().count());
+        assertEquals(100, tree.stream().findFirst().get());
+
+        Spliterator<Integer> whole = tree.spliterator();
+        assertTrue(whole.hasCharacteristics(Spliterator.SORTED | Spliterator.SUBSIZED));
+        Spliterator<Integer> prefix = whole.trySplit();
+        assertEquals(40, prefix.estimateSize() + whole.estimateSize());
+        assertTrue(prefix.tryAdvance(value -> assertEquals(100, value)));
+
+        tree.setIteratorMin(60);
+        tree.setIteratorMax(40);
+        assertEquals(0, tree.stream().count());
+    }
+
+}
@@ -1,3 +1,7 @@
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * This interface defines an ADT for data structures that support storing a 
  * collection of comparable values in their natural ordering (similar to the
@@ -8,5 +12,28 @@ public interface IterableSortedCollection<T extends Comparable<T>>
 
     public void setIteratorMin(Comparable<T> min); // null to clear min
     public void setIteratorMax(Comparable<T> max); // null to clear max
+
+    public int rank(Comparable<T> key); // number of values less than key
+    public T select(int index); // value at zero-based position in sorted order
+    public int countInRange(Comparable<T> lo, Comparable<T> hi); // null for no bound
+
+    public boolean remove(T data); // removes one value that equals data
+
+    // inserts every value of values; collections with a faster bulk insert override this
+    public default void insertAll(List<T> values) {
+        for (T value : values) {
+            insert(value);
+        }
+    }
+
+    // values within the iterator bounds, in sorted order
+    public default Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    // values within the iterator bounds, split across threads
+    public default Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
 }
 
@@ -0,0 +1,121 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class counts the rows a load read and the rows it rejected, and keeps the
+ * first few rejected rows, along with the reason each was rejected, as samples.
+ * Loaders skip rejected rows and keep reading, so a few malformed rows in a large
+ * file do not stop the rest of it from loading. A report can be read while another
+ * thread is still adding to it.
+ */
+public class LoadReport {
+
+    // number of rejected rows kept as samples
+    public static final int MAX_SAMPLES = 10;
+    // longest part of a rejected row kept in a sample
+    private static final int MAX_SAMPLE_BYTES = 200;
+
+    private long loadedRows = 0;
+    private long rejectedRows = 0;
+    private long failedReads = 0;
+    private final List<String> samples = new ArrayList<>();
+
+    /**
+     * Counts rows that were loaded.
+     *
+     * @param rows the number of rows loaded
+     */
+    public synchronized void addLoaded(long rows) {
+        loadedRows += rows;
+    }
+
+    /**
+     * Counts a row that was rejected, and keeps it as a sample while there are
+     * fewer than MAX_SAMPLES. The sample is only built when it is kept.
+     *
+     * @param unit     what position counts, such as "line" or "byte"
+     * @param position where the row is in the file
+     * @param parser   the parser that rejected the row, which describes why
+     * @param bytes    the buffer holding the row
+     * @param start    the index of the first byte of the row
+     * @param end      the index after the last byte of the row
+     */
+    public synchronized void addRejected(String unit, long position, SongCSVFormat.ByteParser parser,
+                                         ByteBuffer bytes, int start, int end) {
+        rejectedRows++;
+        if (samples.size() < MAX_SAMPLES) {
+            byte[] row = new byte[Math.min(end - start, MAX_SAMPLE_BYTES)];
+            bytes.get(start, row);
+            samples.add(unit + " " + position + ": " + parser.error() + " Row: "
+                    + new String(row, StandardCharsets.UTF_8).trim());
+        }
+    }
+
+    /**
+     * Counts a read of a file that failed as a whole, such as a file that was
+     * deleted before it could be opened, and keeps it as a sample while there are
+     * fewer than MAX_SAMPLES. The file's rows are read by a later read, if any.
+     *
+     * @param file  the file that could not be read
+     * @param cause why the read failed
+     */
+    public synchronized void addFailedRead(String file, Exception cause) {
+        failedReads++;
+        if (samples.size() < MAX_SAMPLES) {
+            samples.add("file " + file + ": " + cause);
+        }
+    }
+
+    /**
+     * Adds the counts and samples of a report of a later part of the same load.
+     *
+     * @param other the report to add to this one
+     */
+    public synchronized void merge(LoadReport other) {
+        synchronized (other) {
+            loadedRows += other.loadedRows;
+            rejectedRows += other.rejectedRows;
+            failedReads += other.failedReads;
+            for (String sample : other.samples) {
+                if (samples.size() < MAX_SAMPLES) {
+                    samples.add(sample);
+                }
+            }
+        }
+    }
+
+    public synchronized long getLoadedRows() {
+        return loadedRows;
+    }
+
+    public synchronized long getRejectedRows() {
+        return rejectedRows;
+    }
+
+    public synchronized long getFailedReads() {
+        return failedReads;
+    }
+
+    /**
+     * Returns the samples of rejected rows and failed reads, in the order they
+     * happened.
+     */
+    public synchronized List<String> getSamples() {
+        return new ArrayList<>(samples);
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append("Loaded ").append(loadedRows).append(" rows, rejected ").append(rejectedRows).append('.');
+        if (failedReads > 0) {
+            report.append(" Failed to read a file ").append(failedReads).append(" times.");
+        }
+        for (String sample : samples) {
+            report.append(System.lineSeparator()).append("  ").append(sample);
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,137 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This class reads the songs of a .csv file by memory-mapping it and parsing each
+ * row directly from the mapped UTF-8 bytes with a SongCSVFormat.ByteParser. No
+ * line Strings or per-field builders are created: only the title, artist and genre
+ * of each song become Strings. Files larger than a single mapping are mapped in
+ * consecutive regions that start on line breaks.
+ */
+public class MappedCSVReader {
+
+    // largest region of the file mapped at once
+    private static final long MAX_MAP_BYTES = Integer.MAX_VALUE;
+
+    // encodes the artists and genres of the songs read
+    private final StringDictionary dictionary;
+
+    /**
+     * Creates a reader that encodes artists and genres with a dictionary of its own.
+     */
+    public MappedCSVReader() {
+        this(new StringDictionary());
+    }
+
+    /**
+     * Creates a reader that encodes artists and genres with dictionary, so that
+     * songs of several files share their strings and codes.
+     *
+     * @param dictionary the dictionary of artists and genres
+     */
+    public MappedCSVReader(StringDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Reads the songs of a .csv file. Lines that cannot be parsed are skipped,
+     * and blank lines are ignored.
+     *
+     * @param filename   is the name of the csv file to load data from
+     * @param comparator the comparator passed to every Song created
+     * @return the songs of the file, in file order
+     * @throws IOException when the file cannot be found or read
+     */
+    public List<Song> read(String filename, Comparator<Song> comparator) throws IOException {
+        return read(filename, comparator, new LoadReport());
+    }
+
+    /**
+     * Reads the songs of a .csv file. Lines that cannot be parsed are skipped and
+     * recorded in report, by line number, and blank lines are ignored.
+     *
+     * @param filename   is the name of the csv file to load data from
+     * @param comparator the comparator passed to every Song created
+     * @param report     counts the lines loaded and skipped
+     * @return the songs of the file, in file order
+     * @throws IOException when the file cannot be found or read
+     */
+    public List<Song> read(String filename, Comparator<Song> comparator, LoadReport report) throws IOException {
+        List<Song> songs = new ArrayList<>();
+        long lineNumber = 1; // the header
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long regionStart = 0;
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAX_MAP_BYTES));
+
+            // Read the header line to understand the column order
+            int headerEnd = lineEnd(region, 0);
+            String header = null;
+            if (size > 0) {
+                byte[] headerBytes = new byte[headerEnd];
+                region.get(0, headerBytes);
+                header = stripCarriageReturn(new String(headerBytes, StandardCharsets.UTF_8));
+            }
+            SongCSVFormat.ByteParser parser = new SongCSVFormat(header, dictionary).newByteParser();
+
+            // Read each line of the file
+            int lineStart = headerEnd + 1;
+            while (regionStart + lineStart < size) {
+                int lineEnd = lineEnd(region, lineStart);
+                if (lineEnd == region.limit() && regionStart + lineEnd < size) {
+                    // the line continues past this region, so map the next one from its start
+                    if (lineStart == 0) {
+                        throw new IOException("Line at byte " + regionStart + " is too long to map.");
+                    }
+                    regionStart += lineStart;
+                    region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart,
+                            Math.min(size - regionStart, MAX_MAP_BYTES));
+                    lineStart = 0;
+                    continue;
+                }
+                lineNumber++;
+                if (!SongCSVFormat.isBlank(region, lineStart, lineEnd)) {
+                    Song song = parser.tryParseSong(region, lineStart, lineEnd, comparator);
+                    if (song != null) {
+                        songs.add(song);
+                    } else {
+                        report.addRejected("line", lineNumber, parser, region, lineStart, lineEnd);
+                    }
+                }
+                lineStart = lineEnd + 1;
+            }
+        }
+        report.addLoaded(songs.size());
+        return songs;
+    }
+
+    /**
+     * Finds the end of the line starting at position.
+     *
+     * @param region   the mapped region of the file
+     * @param position the index of the first byte of the line
+     * @return the index of the line's \n, or the limit of the region when none is found
+     */
+    private static int lineEnd(MappedByteBuffer region, int position) {
+        int limit = region.limit();
+        while (position < limit && region.get(position) != '\n') {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Removes the \r of a \r\n line break from the end of a line.
+     */
+    private static String stripCarriageReturn(String line) {
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+}
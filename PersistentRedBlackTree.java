@@ -0,0 +1,601 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class is a persistent red-black tree: its nodes are never changed after they
+ * are created. An insert or removal copies the nodes on the path from the root to
+ * the change, shares every other node with the previous version of the tree, and
+ * then publishes the new root through an AtomicReference. Readers only load the
+ * current root, so they need no locks, and each iterator keeps walking the version
+ * of the tree that was current when it was created, no matter how many writes
+ * happen in the meantime. Writers that race each other retry against the newer
+ * root, so writes are lock-free as well.
+ *
+ * Values that compare equal are kept in insertion order, and iterator bounds are
+ * kept separately for each thread.
+ *
+ * @param <T> The type of data stored in the tree, must be comparable
+ */
+public class PersistentRedBlackTree<T extends Comparable<T>> implements IterableSortedCollection<T> {
+
+    /**
+     * An immutable node of the tree, which stores the number of nodes in its subtree.
+     */
+    private static final class Node<T> {
+        private final T data;
+        private final Node<T> left;
+        private final Node<T> right;
+        private final boolean isRed;
+        private final int size;
+
+        private Node(boolean isRed, Node<T> left, T data, Node<T> right) {
+            this.data = data;
+            this.left = left;
+            this.right = right;
+            this.isRed = isRed;
+            this.size = 1 + sizeOf(left) + sizeOf(right);
+        }
+    }
+
+    private final AtomicReference<Node<T>> root = new AtomicReference<>(null);
+
+    // iterator bounds of each thread
+    private final ThreadLocal<Comparable<T>> min = new ThreadLocal<>();
+    private final ThreadLocal<Comparable<T>> max = new ThreadLocal<>();
+
+    /**
+     * Inserts a new data value into the tree, after any values that compare equal to it.
+     * @param data the new value being inserted
+     * @throws NullPointerException if data argument is null
+     */
+    @Override
+    public void insert(T data) throws NullPointerException {
+        if (data == null) {
+            throw new NullPointerException("Data cannot be null."); // Check for null input
+        }
+        Node<T> current;
+        Node<T> updated;
+        do {
+            current = root.get();
+            updated = blacken(insert(current, data));
+        } while (!root.compareAndSet(current, updated));
+    }
+
+    /**
+     * Inserts many values into the tree at once. The values are sorted, merged with
+     * the values already stored, and a new balanced tree is built from the result,
+     * which takes linear time apart from the sort.
+     * @param values the new values being inserted
+     * @throws NullPointerException if values or any of its elements is null
+     */
+    @Override
+    public void insertAll(List<T> values) throws NullPointerException {
+        List<T> sorted = new ArrayList<>(values);
+        for (T data : sorted) {
+            if (data == null) {
+                throw new NullPointerException("Data cannot be null."); // Check for null input
+            }
+        }
+        sorted.sort(null);
+
+        Node<T> current;
+        Node<T> updated;
+        do {
+            current = root.get();
+            List<T> merged = merge(valuesOf(current, null, null), sorted);
+            // Nodes on the deepest level are red, so that every path to a leaf passes
+            // through the same number of black nodes
+            int redDepth = 31 - Integer.numberOfLeadingZeros(Math.max(1, merged.size()));
+            updated = blacken(buildBalanced(merged, 0, merged.size() - 1, 0, redDepth));
+        } while (!root.compareAndSet(current, updated));
+    }
+
+    /**
+     * Removes one occurrence of data from the tree. Among the values that compare
+     * equal to data, the one that equals() it is removed.
+     * @param data the value being removed
+     * @return true if a value was removed, false if data was not in the tree
+     * @throws NullPointerException if data argument is null
+     */
+    @Override
+    public boolean remove(T data) throws NullPointerException {
+        if (data == null) {
+            throw new NullPointerException("Data cannot be null."); // Check for null input
+        }
+        Node<T> current;
+        Node<T> updated;
+        do {
+            current = root.get();
+            int index = indexOf(current, data);
+            if (index < 0) {
+                return false;
+            }
+            updated = blacken(remove(current, index));
+        } while (!root.compareAndSet(current, updated));
+        return true;
+    }
+
+    /**
+     * Replaces a value of the tree with a new value. Both changes are published as a
+     * single new version of the tree, so no reader sees the tree without either value.
+     * @param oldValue the value being replaced
+     * @param newValue the value stored in its place
+     * @return true if oldValue was replaced, false if it was not in the tree
+     * @throws NullPointerException if either argument is null
+     */
+    public boolean update(T oldValue, T newValue) throws NullPointerException {
+        if (oldValue == null || newValue == null) {
+            throw new NullPointerException("Data cannot be null."); // Check for null input
+        }
+        Node<T> current;
+        Node<T> updated;
+        do {
+            current = root.get();
+            int index = indexOf(current, oldValue);
+            if (index < 0) {
+                return false;
+            }
+            updated = blacken(insert(blacken(remove(current, index)), newValue));
+        } while (!root.compareAndSet(current, updated));
+        return true;
+    }
+
+    @Override
+    public boolean contains(Comparable<T> data) {
+        if (data == null) {
+            return false; // Null not allowed
+        }
+        Node<T> node = root.get();
+        while (node != null) {
+            int comparison = data.compareTo(node.data); // Compare once per level
+            if (comparison == 0) {
+                return true;
+            }
+            node = (comparison > 0) ? node.right : node.left;
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return sizeOf(root.get());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root.get() == null;
+    }
+
+    @Override
+    public void clear() {
+        root.set(null);
+    }
+
+    @Override
+    public int rank(Comparable<T> key) {
+        return countBelow(root.get(), key, false);
+    }
+
+    @Override
+    public T select(int index) {
+        Node<T> node = root.get();
+        if (index < 0 || index >= sizeOf(node)) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + sizeOf(node));
+        }
+        while (true) {
+            int leftSize = sizeOf(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.data;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    @Override
+    public int countInRange(Comparable<T> lo, Comparable<T> hi) {
+        Node<T> snapshot = root.get(); // both counts must come from the same version
+        int atMostHi = (hi == null) ? sizeOf(snapshot) : countBelow(snapshot, hi, true);
+        int belowLo = (lo == null) ? 0 : countBelow(snapshot, lo, false);
+        return Math.max(0, atMostHi - belowLo);
+    }
+
+    /**
+     * Sets the minimum value of the iterators this thread creates afterwards.
+     * @param min the minimum for iterators, or null for no minimum
+     */
+    @Override
+    public void setIteratorMin(Comparable<T> min) {
+        this.min.set(min);
+    }
+
+    /**
+     * Sets the maximum value of the iterators this thread creates afterwards.
+     * @param max the maximum for iterators, or null for no maximum
+     */
+    @Override
+    public void setIteratorMax(Comparable<T> max) {
+        this.max.set(max);
+    }
+
+    /**
+     * Returns an iterator over the values within this thread's iterator bounds, in
+     * sorted order. The iterator walks the version of the tree that is current now,
+     * so writes made while it is in use are not seen by it.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new SnapshotIterator<>(root.get(), min.get(), max.get());
+    }
+
+    /**
+     * Iterator over one version of the tree, which follows an in-order traversal of
+     * the nodes between its bounds.
+     */
+    private static class SnapshotIterator<T> implements Iterator<T> {
+        private final Comparable<T> max;
+        private final ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+
+        private SnapshotIterator(Node<T> root, Comparable<T> min, Comparable<T> max) {
+            this.max = max;
+            // Push the path to the first value that is not below min
+            for (Node<T> node = root; node != null; ) {
+                if (min == null || min.compareTo(node.data) <= 0) {
+                    stack.push(node);
+                    node = node.left;
+                } else {
+                    node = node.right; // Skip left if below min
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty() && (max == null || max.compareTo(stack.peek().data) >= 0);
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more elements in the iterator");
+            }
+            Node<T> node = stack.pop();
+            for (Node<T> next = node.right; next != null; next = next.left) {
+                stack.push(next);
+            }
+            return node.data;
+        }
+    }
+
+    /**
+     * Returns a copy of the subtree rooted at node with data inserted into it. The
+     * copy may have a red root with a red child, which the caller repairs.
+     */
+    private static <T extends Comparable<T>> Node<T> insert(Node<T> node, T data) {
+        if (node == null) {
+            return new Node<>(true, null, data, null);
+        }
+        if (data.compareTo(node.data) < 0) {
+            Node<T> left = insert(node.left, data);
+            return node.isRed ? new Node<>(true, left, node.data, node.right) : balance(left, node.data, node.right);
+        }
+        Node<T> right = insert(node.right, data); // equal values go after node
+        return node.isRed ? new Node<>(true, node.left, node.data, right) : balance(node.left, node.data, right);
+    }
+
+    /**
+     * Returns a copy of the subtree rooted at node without the value at the given
+     * in-order position. When node was black, the copy has one fewer black node on
+     * each path, which the caller repairs.
+     */
+    private static <T> Node<T> remove(Node<T> node, int index) {
+        int leftSize = sizeOf(node.left);
+        if (index < leftSize) {
+            Node<T> left = remove(node.left, index);
+            return isRed(node.left) ? new Node<>(true, left, node.data, node.right)
+                    : balanceLeft(left, node.data, node.right);
+        }
+        if (index > leftSize) {
+            Node<T> right = remove(node.right, index - leftSize - 1);
+            return isRed(node.right) ? new Node<>(true, node.left, node.data, right)
+                    : balanceRight(node.left, node.data, right);
+        }
+        return fuse(node.left, node.right);
+    }
+
+    /**
+     * Builds a black node from a left subtree, a value and a right subtree, one of
+     * which may be a red node with a red child, and restores the red property by
+     * turning the four possible red-red shapes into a red node with black children.
+     */
+    private static <T> Node<T> balance(Node<T> left, T data, Node<T> right) {
+        if (isRed(left) && isRed(right)) {
+            return new Node<>(true, blacken(left), data, blacken(right));
+        }
+        if (isRed(left) && isRed(left.left)) {
+            return new Node<>(true, blacken(left.left), left.data, new Node<>(false, left.right, data, right));
+        }
+        if (isRed(left) && isRed(left.right)) {
+            return new Node<>(true, new Node<>(false, left.left, left.data, left.right.left),
+                    left.right.data, new Node<>(false, left.right.right, data, right));
+        }
+        if (isRed(right) && isRed(right.right)) {
+            return new Node<>(true, new Node<>(false, left, data, right.left), right.data, blacken(right.right));
+        }
+        if (isRed(right) && isRed(right.left)) {
+            return new Node<>(true, new Node<>(false, left, data, right.left.left),
+                    right.left.data, new Node<>(false, right.left.right, right.data, right.right));
+        }
+        return new Node<>(false, left, data, right);
+    }
+
+    /**
+     * Joins a left subtree that is missing one black node on each path with a value
+     * and a right subtree, restoring equal black heights.
+     */
+    private static <T> Node<T> balanceLeft(Node<T> left, T data, Node<T> right) {
+        if (isRed(left)) {
+            return new Node<>(true, blacken(left), data, right);
+        }
+        if (!isRed(right)) {
+            return balance(left, data, redden(right));
+        }
+        // right is red with a black left child, rotate that child up
+        Node<T> middle = right.left;
+        return new Node<>(true, new Node<>(false, left, data, middle.left), middle.data,
+                balance(middle.right, right.data, redden(right.right)));
+    }
+
+    /**
+     * Joins a left subtree with a value and a right subtree that is missing one black
+     * node on each path, restoring equal black heights.
+     */
+    private static <T> Node<T> balanceRight(Node<T> left, T data, Node<T> right) {
+        if (isRed(right)) {
+            return new Node<>(true, left, data, blacken(right));
+        }
+        if (!isRed(left)) {
+            return balance(redden(left), data, right);
+        }
+        // left is red with a black right child, rotate that child up
+        Node<T> middle = left.right;
+        return new Node<>(true, balance(redden(left.left), left.data, middle.left), middle.data,
+                new Node<>(false, middle.right, data, right));
+    }
+
+    /**
+     * Joins two subtrees of the same black height, where every value of left comes
+     * before every value of right, into a single subtree.
+     */
+    private static <T> Node<T> fuse(Node<T> left, Node<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (isRed(left) && !isRed(right)) {
+            return new Node<>(true, left.left, left.data, fuse(left.right, right));
+        }
+        if (!isRed(left) && isRed(right)) {
+            return new Node<>(true, fuse(left, right.left), right.data, right.right);
+        }
+        Node<T> middle = fuse(left.right, right.left);
+        if (isRed(middle)) {
+            // lift the red middle node between left and right
+            return new Node<>(true, new Node<>(left.isRed, left.left, left.data, middle.left), middle.data,
+                    new Node<>(right.isRed, middle.right, right.data, right.right));
+        }
+        if (isRed(left)) {
+            return new Node<>(true, left.left, left.data, new Node<>(true, middle, right.data, right.right));
+        }
+        return balanceLeft(left.left, left.data, new Node<>(false, middle, right.data, right.right));
+    }
+
+    /**
+     * Finds the in-order position of the node storing data, looking through every
+     * value that compares equal to data for one that equals() it.
+     * @return the position of data, or -1 when it is not in the tree
+     */
+    private static <T extends Comparable<T>> int indexOf(Node<T> root, T data) {
+        int index = countBelow(root, data, false);
+        SnapshotIterator<T> equal = new SnapshotIterator<>(root, data, data);
+        while (equal.hasNext()) {
+            if (data.equals(equal.next())) {
+                return index;
+            }
+            index++;
+        }
+        return -1;
+    }
+
+    /**
+     * Counts the values that are less than key (or less than or equal to key when
+     * inclusive is true) with a single descent from the root.
+     */
+    private static <T> int countBelow(Node<T> node, Comparable<T> key, boolean inclusive) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null.");
+        }
+        int count = 0;
+        while (node != null) {
+            int cmp = key.compareTo(node.data);
+            if (cmp > 0 || (inclusive && cmp == 0)) {
+                count += sizeOf(node.left) + 1; // node and its left subtree
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the values of a subtree from lo to hi in sorted order.
+     */
+    private static <T> List<T> valuesOf(Node<T> root, Comparable<T> lo, Comparable<T> hi) {
+        List<T> values = new ArrayList<>(sizeOf(root));
+        new SnapshotIterator<>(root, lo, hi).forEachRemaining(values::add);
+        return values;
+    }
+
+    /**
+     * Merges two sorted lists into a new sorted list. Values from first are placed
+     * before equal values from second.
+     */
+    private static <T extends Comparable<T>> List<T> merge(List<T> first, List<T> second) {
+        List<T> merged = new ArrayList<>(first.size() + second.size());
+        int i = 0;
+        int j = 0;
+        while (i < first.size() && j < second.size()) {
+            if (second.get(j).compareTo(first.get(i)) < 0) {
+                merged.add(second.get(j++));
+            } else {
+                merged.add(first.get(i++));
+            }
+        }
+        merged.addAll(first.subList(i, first.size()));
+        merged.addAll(second.subList(j, second.size()));
+        return merged;
+    }
+
+    /**
+     * Builds a balanced subtree from the values between indices lo and hi (inclusive)
+     * of a sorted list, using the middle value as the root of each subtree.
+     */
+    private static <T> Node<T> buildBalanced(List<T> sorted, int lo, int hi, int depth, int redDepth) {
+        if (lo > hi) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        Node<T> left = buildBalanced(sorted, lo, mid - 1, depth + 1, redDepth);
+        Node<T> right = buildBalanced(sorted, mid + 1, hi, depth + 1, redDepth);
+        return new Node<>(depth == redDepth, left, sorted.get(mid), right);
+    }
+
+    private static int sizeOf(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static boolean isRed(Node<?> node) {
+        return node != null && node.isRed;
+    }
+
+    private static <T> Node<T> blacken(Node<T> node) {
+        return (node == null || !node.isRed) ? node : new Node<>(false, node.left, node.data, node.right);
+    }
+
+    private static <T> Node<T> redden(Node<T> node) {
+        return new Node<>(true, node.left, node.data, node.right);
+    }
+
+    // Test Cases
+
+    /**
+     * Checks that no red node has a red child, that subtree sizes are correct, and
+     * that every path from node to a leaf passes through the same number of black nodes.
+     * @return the number of black nodes on each path from node to a leaf
+     */
+    private static int checkProperties(Node<Integer> node) {
+        if (node == null) {
+            return 1;
+        }
+        if (node.isRed) {
+            assertFalse(isRed(node.left) || isRed(node.right), "Red node with a red child");
+        }
+        int left = checkProperties(node.left);
+        int right = checkProperties(node.right);
+        assertEquals(left, right, "Unequal black heights");
+        assertEquals(1 + sizeOf(node.left) + sizeOf(node.right), node.size);
+        return left + (node.isRed ? 0 : 1);
+    }
+
+    /**
+     * Test 1: Ensures random inserts, bulk inserts and removals, including duplicate
+     * values, keep the red-black properties and match a sorted list.
+     */
+    @Test
+    public void testMatchesSortedList() {
+        Random random = new Random(400);
+        PersistentRedBlackTree<Integer> tree = new PersistentRedBlackTree<>();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            int value = random.nextInt(200);
+            int operation = random.nextInt(10);
+            if (operation < 5) {
+                tree.insert(value);
+                expected.add(value);
+            } else if (operation < 6) {
+                tree.insertAll(List.of(value, value + 1));
+                expected.add(value);
+                expected.add(value + 1);
+            } else {
+                assertEquals(expected.remove((Integer) value), tree.remove(value));
+            }
+            expected.sort(null);
+            assertFalse(isRed(tree.root.get()), "Root must be black");
+            checkProperties(tree.root.get());
+        }
+
+        List<Integer> actual = new ArrayList<>();
+        tree.forEach(actual::add);
+        assertEquals(expected, actual);
+        assertEquals(expected.size(), tree.size());
+        assertEquals(expected.get(expected.size() / 2), tree.select(expected.size() / 2));
+        assertEquals(expected.indexOf(100), tree.rank(100));
+        assertTrue(tree.update(expected.get(0), 1000));
+        assertEquals(1000, tree.select(tree.size() - 1));
+    }
+
+    /**
+     * Test 2: Ensures an iterator keeps walking the version of the tree that was
+     * current when it was created, while other threads insert and remove values.
+     */
+    @Test
+    public void testSnapshotIteration() throws InterruptedException {
+        PersistentRedBlackTree<Integer> tree = new PersistentRedBlackTree<>();
+        for (int i = 0; i < 1000; i++) {
+            tree.insert(2 * i); // even values
+        }
+        tree.setIteratorMin(100);
+        tree.setIteratorMax(199);
+        Iterator<Integer> iterator = tree.iterator();
+
+        // Two writers add odd values and remove even values at the same time
+        Thread adder = new Thread(() -> {
+            for (int i = 0; i < 1000; i++) {
+                tree.insert(2 * i + 1);
+            }
+        });
+        Thread remover = new Thread(() -> {
+            for (int i = 0; i < 1000; i += 2) {
+                tree.remove(2 * i);
+            }
+        });
+        adder.start();
+        remover.start();
+
+        List<Integer> seen = new ArrayList<>();
+        iterator.forEachRemaining(seen::add);
+        adder.join();
+        remover.join();
+
+        List<Integer> expected = new ArrayList<>();
+        for (int value = 100; value < 200; value += 2) {
+            expected.add(value);
+        }
+        assertEquals(expected, seen, "The iterator should only see its own version of the tree.");
+        assertEquals(1500, tree.size()); // both writers' changes were kept
+        checkProperties(tree.root.get());
+    }
+}
@@ -6,6 +6,9 @@ public class RBTNode<T> extends BinaryTreeNode<T> {
     // store whether this is a red or black node
     protected boolean isRed = true;
 
+    // number of nodes in the subtree rooted at this node, including this node
+    protected int size = 1;
+
     /**
      * Constructor that creates a new node with the value data.
      * Both parent and child references of the new node are initialized to null.
@@ -56,6 +59,31 @@ public class RBTNode<T> extends BinaryTreeNode<T> {
         this.isRed = !this.isRed;
     }
 
+    /**
+     * Returns the number of nodes in the subtree rooted at this node.
+     * @return the size of this node's subtree, including this node
+     */
+    public int subtreeSize() {
+        return this.size;
+    }
+
+    /**
+     * Recomputes the subtree size of this node from the sizes of its children.
+     * Must be called whenever the children of this node change.
+     */
+    public void updateSize() {
+        this.size = 1 + sizeOf(this.childLeft()) + sizeOf(this.childRight());
+    }
+
+    /**
+     * Returns the subtree size of the given node, treating null as an empty subtree.
+     * @param node the root of the subtree, or null
+     * @return the number of nodes in that subtree
+     */
+    public static int sizeOf(RBTNode<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
     /**
      * Returns a string representation for this node.
      * @return a string representation of the node's value and color
@@ -1,6 +1,7 @@
 import org.junit.jupiter.api.Test;                                                                                                          
 import static org.junit.jupiter.api.Assertions.*;                               
 import java.io.IOException;                                                     
+import java.util.ArrayList;
 import java.util.List; 
 
 public class RedBlackTree<T extends Comparable<T>> extends BSTRotation<T> {
@@ -12,7 +13,9 @@ public class RedBlackTree<T extends Comparable<T>> extends BSTRotation<T> {
      * and recoloring as needed to restore Red-Black Tree properties.
      *
      * Ensures O(log N) runtime for {@code insert} and {@code contains} operations by
-     * recursively handling violations caused by repairs, following the lecture algorithm.
+     * handling violations caused by repairs, following the lecture algorithm. Repairs
+     * that move the violation up to the grandparent continue in a loop rather than
+     * through recursion, so no tree height can overflow the stack.
      *
      * @param redNode The red node with a red parent causing the violation. Must not be null.
      * @throws IllegalArgumentException if the node is null.
@@ -22,34 +25,34 @@ public class RedBlackTree<T extends Comparable<T>> extends BSTRotation<T> {
             throw new IllegalArgumentException("Node cannot be null.");
         }
 
-        // Base case: Stop if the node is root or its parent is black
-        if (newNode.parent() == null || !newNode.parent().isRed()) {
-            return;
-        }
+        // Stop once the node is root or its parent is black
+        while (newNode.parent() != null && newNode.parent().isRed()) {
+            RBTNode<T> parent = newNode.parent();
+            RBTNode<T> grandparent = parent.parent();
 
-        RBTNode<T> parent = newNode.parent();
-        RBTNode<T> grandparent = parent.parent();
+            // Get the uncle of the node
+            RBTNode<T> uncle = (grandparent.childLeft() == parent)
+                    ? grandparent.childRight()
+                    : grandparent.childLeft();
 
-        // Get the uncle of the node
-        RBTNode<T> uncle = (grandparent.childLeft() == parent)
-                ? grandparent.childRight()
-                : grandparent.childLeft();
-
-        // Case 1: Uncle is red (recoloring)
-        if (uncle != null && uncle.isRed()) {
-            case1(newNode); // Call Case 1 logic
-            ensureRedProperty(grandparent); // Recur on grandparent
-        }
-        // Case 2: Uncle is black and node forms a line
-        else if ((!newNode.isRightChild() && parent == grandparent.childLeft())
-                || (newNode.isRightChild() && parent == grandparent.childRight())) {
-            case2(newNode); // Call Case 2 logic
-        }
-        // Case 3: Uncle is black and node forms a zigzag
-        else {
-            case3(newNode); // Call Case 3 logic
-            //now we have a line, so we can call case2
-            case2(parent); // Call Case 2 logic on parent
+            // Case 1: Uncle is red (recoloring)
+            if (uncle != null && uncle.isRed()) {
+                case1(newNode); // Call Case 1 logic
+                newNode = grandparent; // Continue with grandparent
+                continue;
+            }
+            // Case 2: Uncle is black and node forms a line
+            if ((!newNode.isRightChild() && parent == grandparent.childLeft())
+                    || (newNode.isRightChild() && parent == grandparent.childRight())) {
+                case2(newNode); // Call Case 2 logic
+            }
+            // Case 3: Uncle is black and node forms a zigzag
+            else {
+                case3(newNode); // Call Case 3 logic
+                //now we have a line, so we can call case2
+                case2(parent); // Call Case 2 logic on parent
+            }
+            return;
         }
     }
 
@@ -102,7 +105,7 @@ public class RedBlackTree<T extends Comparable<T>> extends BSTRotation<T> {
         if (data == null) {
             throw new NullPointerException("Data cannot be null."); // Check for null input
         }
-        RBTNode<T> newNode = new RBTNode<>(data); // Create new node (red by default)
+        RBTNode<T> newNode = createNode(data); // Create new node (red by default)
 
         // If root is null, assign as root and make it black
         if (root == null) {
@@ -111,11 +114,425 @@ public class RedBlackTree<T extends Comparable<T>> extends BSTRotation<T> {
         } else {
             // Otherwise, insert and ensure red property
             insertHelper(newNode, root);
+            // Refresh every ancestor of the new node from the bottom up, so
+            // subtree sizes include it before any rotations happen
+            for (RBTNode<T> node = newNode.parent(); node != null; node = node.parent()) {
+                updateAugmentation(node);
+            }
             ensureRedProperty(newNode); // Ensure red property
             ((RBTNode<T>) this.root).isRed = false; // Ensure the root is black after all repairs
         }
     }
 
+    /**
+     * Inserts many values into the RedBlackTree at once. The values are sorted once,
+     * merged with the values already stored in the tree, and the tree is then rebuilt
+     * directly from that sorted sequence. Apart from the sort, this takes time linear
+     * in the total number of values and performs no rotations.
+     * @param values the new values being inserted
+     * @throws NullPointerException if values or any of its elements is null
+     */
+    public void insertAll(List<T> values) throws NullPointerException {
+        List<T> sorted = new ArrayList<>(values);
+        for (T data : sorted) {
+            if (data == null) {
+                throw new NullPointerException("Data cannot be null."); // Check for null input
+            }
+        }
+        sorted.sort(null); // natural ordering, and close to linear for pre-sorted input
+
+        // Merge with the values already stored, which are visited in sorted order
+        if (this.root != null) {
+            List<T> existing = new ArrayList<>(size());
+            collectInOrder((RBTNode<T>) this.root, existing);
+            sorted = merge(existing, sorted);
+        }
+
+        if (sorted.isEmpty()) {
+            this.root = null;
+            return;
+        }
+        // Nodes on the deepest level are red, so that every path to a leaf passes
+        // through the same number of black nodes
+        int redDepth = 31 - Integer.numberOfLeadingZeros(sorted.size());
+        this.root = buildBalanced(sorted, 0, sorted.size() - 1, 0, redDepth);
+        this.root.setParent(null);
+        ((RBTNode<T>) this.root).isRed = false; // The root is always black
+    }
+
+    /**
+     * Builds a balanced subtree from the values between indices lo and hi (inclusive)
+     * of a sorted list, using the middle value as the root of each subtree.
+     * @param sorted the values in sorted order
+     * @param lo the index of the first value in this subtree
+     * @param hi the index of the last value in this subtree
+     * @param depth the depth of the subtree's root within the whole tree
+     * @param redDepth the depth at which nodes are colored red
+     * @return the root of the new subtree, or null when lo is greater than hi
+     */
+    private RBTNode<T> buildBalanced(List<T> sorted, int lo, int hi, int depth, int redDepth) {
+        if (lo > hi) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        RBTNode<T> node = createNode(sorted.get(mid));
+        node.isRed = (depth == redDepth);
+
+        RBTNode<T> left = buildBalanced(sorted, lo, mid - 1, depth + 1, redDepth);
+        RBTNode<T> right = buildBalanced(sorted, mid + 1, hi, depth + 1, redDepth);
+        if (left != null) {
+            node.setChildLeft(left);
+            left.setParent(node);
+        }
+        if (right != null) {
+            node.setChildRight(right);
+            right.setParent(node);
+        }
+        updateAugmentation(node); // children are complete, so this node can be updated
+        return node;
+    }
+
+    /**
+     * Adds the values of the subtree rooted at node to the list in sorted order.
+     * @param node the root of the subtree, or null
+     * @param values the list the values are added to
+     */
+    private void collectInOrder(RBTNode<T> node, List<T> values) {
+        while (node != null) {
+            collectInOrder(node.childLeft(), values);
+            values.add(node.getData());
+            node = node.childRight(); // loop on the right side instead of recursing
+        }
+    }
+
+    /**
+     * Merges two sorted lists into a new sorted list. Values from first are placed
+     * before equal values from second.
+     * @param first a sorted list
+     * @param second a sorted list
+     * @return a sorted list holding the values of both lists
+     */
+    private List<T> merge(List<T> first, List<T> second) {
+        List<T> merged = new ArrayList<>(first.size() + second.size());
+        int i = 0;
+        int j = 0;
+        while (i < first.size() && j < second.size()) {
+            if (second.get(j).compareTo(first.get(i)) < 0) {
+                merged.add(second.get(j++));
+            } else {
+                merged.add(first.get(i++));
+            }
+        }
+        merged.addAll(first.subList(i, first.size()));
+        merged.addAll(second.subList(j, second.size()));
+        return merged;
+    }
+
+    /**
+     * Removes one occurrence of data from the RedBlackTree. Among the values that
+     * compare equal to data, the one that equals() it is removed, so a single song
+     * can be removed from a group of songs that share the same key. The removal and
+     * the double-black repairs that follow it take O(log N) time, plus the number of
+     * values that share data's key.
+     * @param data the value being removed
+     * @return true if a value was removed, false if data was not in the tree
+     * @throws NullPointerException if data argument is null
+     */
+    public boolean remove(T data) throws NullPointerException {
+        if (data == null) {
+            throw new NullPointerException("Data cannot be null."); // Check for null input
+        }
+        RBTNode<T> node = findNode(data);
+        if (node == null) {
+            return false;
+        }
+
+        // A node with two children takes the value of its successor, and the
+        // successor's node, which has at most one child, is removed instead
+        if (node.childLeft() != null && node.childRight() != null) {
+            RBTNode<T> successor = node.childRight();
+            while (successor.childLeft() != null) {
+                successor = successor.childLeft();
+            }
+            node.data = successor.data;
+            node = successor;
+        }
+
+        RBTNode<T> child = (node.childLeft() != null) ? node.childLeft() : node.childRight();
+        RBTNode<T> parent = node.parent();
+        replaceChild(parent, node, child);
+        // Refresh every ancestor of the removed node from the bottom up, so subtree
+        // sizes no longer include it before any rotations happen
+        for (RBTNode<T> ancestor = parent; ancestor != null; ancestor = ancestor.parent()) {
+            updateAugmentation(ancestor);
+        }
+
+        if (!node.isRed()) {
+            if (child != null) {
+                child.isRed = false; // A red child takes the place of its black parent
+            } else if (parent != null) {
+                ensureBlackHeight(parent, parent.childLeft() == null);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replaces a value of the RedBlackTree with a new value, for example a song whose
+     * energy was corrected. The node of the old value is removed and the new value is
+     * inserted where its key belongs, which takes O(log N) time.
+     * @param oldValue the value being replaced
+     * @param newValue the value stored in its place
+     * @return true if oldValue was replaced, false if it was not in the tree, in which
+     *         case newValue is not inserted
+     * @throws NullPointerException if either argument is null
+     */
+    public boolean update(T oldValue, T newValue) throws NullPointerException {
+        if (newValue == null) {
+            throw new NullPointerException("Data cannot be null."); // Check for null input
+        }
+        if (!remove(oldValue)) {
+            return false;
+        }
+        insert(newValue);
+        return true;
+    }
+
+    /**
+     * Finds the node storing data, looking through every node whose value compares
+     * equal to data for one whose value equals() data.
+     * @param data the value to look for
+     * @return the node holding data, or null when there is none
+     */
+    private RBTNode<T> findNode(T data) {
+        // Find the first node, in sorted order, that compares equal to data
+        RBTNode<T> first = null;
+        RBTNode<T> node = (RBTNode<T>) this.root;
+        while (node != null) {
+            int cmp = data.compareTo(node.getData());
+            if (cmp <= 0) {
+                if (cmp == 0) {
+                    first = node;
+                }
+                node = node.childLeft();
+            } else {
+                node = node.childRight();
+            }
+        }
+
+        // Visit the equal values in sorted order through parent links
+        for (node = first; node != null && data.compareTo(node.getData()) == 0; node = successor(node)) {
+            if (data.equals(node.getData())) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the node that follows node in sorted order, or null for the last node.
+     */
+    protected static <T> RBTNode<T> successor(RBTNode<T> node) {
+        if (node.childRight() != null) {
+            node = node.childRight();
+            while (node.childLeft() != null) {
+                node = node.childLeft();
+            }
+            return node;
+        }
+        while (node.parent() != null && node.isRightChild()) {
+            node = node.parent();
+        }
+        return node.parent();
+    }
+
+    /**
+     * Puts replacement in the position of node below parent, or at the root when
+     * parent is null.
+     */
+    private void replaceChild(RBTNode<T> parent, RBTNode<T> node, RBTNode<T> replacement) {
+        if (parent == null) {
+            this.root = replacement;
+        } else if (parent.childLeft() == node) {
+            parent.setChildLeft(replacement);
+        } else {
+            parent.setChildRight(replacement);
+        }
+        if (replacement != null) {
+            replacement.setParent(parent);
+        }
+    }
+
+    /**
+     * Repairs a black height violation left by removing a black node: the subtree on
+     * one side of parent has one fewer black node on each path than the other side.
+     * Uses rotations (via {@code rotate} from {@code BSTRotation}) and recoloring,
+     * moving the missing black node up the tree in a loop until it can be restored.
+     * @param parent the parent of the subtree that is missing a black node
+     * @param leftSide whether that subtree is parent's left subtree
+     */
+    private void ensureBlackHeight(RBTNode<T> parent, boolean leftSide) {
+        RBTNode<T> node = leftSide ? parent.childLeft() : parent.childRight();
+        while (parent != null && !isRed(node)) {
+            RBTNode<T> sibling = leftSide ? parent.childRight() : parent.childLeft();
+
+            // Case 1: Red sibling, rotate it above parent to get a black sibling
+            if (sibling.isRed()) {
+                rotate(sibling, parent);
+                sibling.isRed = false;
+                parent.isRed = true;
+                sibling = leftSide ? parent.childRight() : parent.childLeft();
+            }
+
+            RBTNode<T> near = leftSide ? sibling.childLeft() : sibling.childRight();
+            RBTNode<T> far = leftSide ? sibling.childRight() : sibling.childLeft();
+            // Case 2: Black sibling with black children, move the missing black node up
+            if (!isRed(near) && !isRed(far)) {
+                sibling.isRed = true;
+                node = parent;
+                parent = node.parent();
+                leftSide = parent != null && parent.childLeft() == node;
+                continue;
+            }
+            // Case 3: Black sibling whose far child is black, rotate the near child up
+            if (!isRed(far)) {
+                rotate(near, sibling);
+                near.isRed = false;
+                sibling.isRed = true;
+                far = sibling;
+                sibling = near;
+            }
+            // Case 4: Black sibling with a red far child, rotate sibling above parent
+            rotate(sibling, parent);
+            sibling.isRed = parent.isRed;
+            parent.isRed = false;
+            far.isRed = false;
+            return;
+        }
+        if (node != null) {
+            node.isRed = false; // A red node absorbs the missing black
+        }
+    }
+
+    /**
+     * Returns whether node is red, treating null leaves as black.
+     */
+    private static boolean isRed(RBTNode<?> node) {
+        return node != null && node.isRed();
+    }
+
+    /**
+     * Creates the node used to store a newly inserted value. Subclasses that keep
+     * extra information in their nodes override this to return their own node type.
+     * @param data the value the new node stores
+     * @return a new red node holding data
+     */
+    protected RBTNode<T> createNode(T data) {
+        return new RBTNode<>(data);
+    }
+
+    /**
+     * Recomputes the subtree size of a node whose children were changed by a rotation
+     * or by an insertion below it.
+     * @param node the node whose children were changed
+     */
+    @Override
+    protected void updateAugmentation(BinaryTreeNode<T> node) {
+        ((RBTNode<T>) node).updateSize();
+    }
+
+    /**
+     * Counts the number of values in the tree using the subtree size stored in the
+     * root, so this takes constant time.
+     * @return the number of values in the tree, including duplicates
+     */
+    @Override
+    public int size() {
+        return RBTNode.sizeOf((RBTNode<T>) this.root);
+    }
+
+    /**
+     * Counts the values in the tree that are strictly less than key.
+     * @param key the value to rank
+     * @return the number of values stored in the tree that are less than key
+     * @throws NullPointerException if key is null
+     */
+    public int rank(Comparable<T> key) {
+        return countBelow(key, false);
+    }
+
+    /**
+     * Returns the value at the given position in the sorted order of this tree.
+     * @param index the zero-based position of the value, counting duplicates
+     * @return the value at that position
+     * @throws IndexOutOfBoundsException if index is negative or not less than size()
+     */
+    public T select(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size());
+        }
+        return selectNode(index).getData();
+    }
+
+    /**
+     * Finds the node at the given position in the sorted order of this tree, using
+     * the subtree sizes to descend directly to it.
+     * @param index the zero-based position of the node, which must be less than size()
+     * @return the node at that position
+     */
+    protected RBTNode<T> selectNode(int index) {
+        RBTNode<T> node = (RBTNode<T>) this.root;
+        while (true) {
+            int leftSize = RBTNode.sizeOf(node.childLeft());
+            if (index < leftSize) {
+                node = node.childLeft();
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.childRight();
+            }
+        }
+    }
+
+    /**
+     * Counts the values in the tree that lie between lo and hi, inclusive. The bounds
+     * are interpreted the same way as iterator min and max values.
+     * @param lo the minimum value to count, or null for no minimum
+     * @param hi the maximum value to count, or null for no maximum
+     * @return the number of values from lo to hi stored in the tree
+     */
+    public int countInRange(Comparable<T> lo, Comparable<T> hi) {
+        int atMostHi = (hi == null) ? size() : countBelow(hi, true);
+        int belowLo = (lo == null) ? 0 : countBelow(lo, false);
+        return Math.max(0, atMostHi - belowLo);
+    }
+
+    /**
+     * Counts the values that are less than key (or less than or equal to key when
+     * inclusive is true) with a single descent from the root.
+     * @param key the value to compare against
+     * @param inclusive whether values equal to key are counted
+     * @return the number of values found below key
+     */
+    private int countBelow(Comparable<T> key, boolean inclusive) {
+        if (key == null) {
+            throw new NullPointerException("Key cannot be null.");
+        }
+        int count = 0;
+        RBTNode<T> node = (RBTNode<T>) this.root;
+        while (node != null) {
+            int cmp = key.compareTo(node.getData());
+            if (cmp > 0 || (inclusive && cmp == 0)) {
+                count += RBTNode.sizeOf(node.childLeft()) + 1; // node and its left subtree
+                node = node.childRight();
+            } else {
+                node = node.childLeft();
+            }
+        }
+        return count;
+    }
+
     // JUnit 5 Test cases
 
     /**
@@ -207,5 +624,85 @@ public class RedBlackTree<T extends Comparable<T>> extends BSTRotation<T> {
         assertTrue(((RBTNode<Integer>) tree.root.childLeft()).isRed()); // Left child (1) is red
         assertTrue(((RBTNode<Integer>) tree.root.childRight()).isRed()); // Right child (10) is red
     }
-}
 
+    /**
+     * Tests building a Red-Black Tree from many values at once.
+     * - Builds the tree from unsorted values and checks the balanced, colored shape.
+     * - Adds more values to the non-empty tree and checks they are merged in order.
+     */
+    @Test
+    public void testRBT4() {
+        RedBlackTree<Integer> tree = new RedBlackTree<>();
+
+        tree.insertAll(List.of(4, 1, 6, 3, 2, 5));
+
+        // The middle value becomes the root and only the deepest level is red
+        String expectedLevelOrder = "[ 3(b), 1(b), 5(b), 2(r), 4(r), 6(r) ]";
+        assertEquals(expectedLevelOrder, tree.root.toLevelOrderString());
+        assertEquals(6, tree.size());
+
+        // Merge with the existing values, then keep inserting one value at a time
+        tree.insertAll(List.of(0, 7));
+        tree.insert(8);
+        assertEquals(9, tree.size());
+        for (int i = 0; i < 9; i++) {
+            assertEquals(i, tree.select(i)); // values are stored in sorted order
+        }
+        assertFalse(((RBTNode<Integer>) tree.root).isRed()); // Root must be black
+    }
+
+    /**
+     * Tests removing values from a Red-Black Tree.
+     * - Removes leaves, nodes with one child and nodes with two children, in an order
+     *   that triggers every double-black repair case, checking the red-black
+     *   properties and subtree sizes after each removal.
+     * - Removes one of several equal values and updates a value to a new key.
+     */
+    @Test
+    public void testRBT5() {
+        RedBlackTree<Integer> tree = new RedBlackTree<>();
+        for (int i = 0; i < 64; i++) {
+            tree.insert((i * 37) % 64); // a fixed, scrambled order
+        }
+        for (int i = 0; i < 64; i++) {
+            int value = (i * 23) % 64;
+            assertTrue(tree.remove(value));
+            assertFalse(tree.contains(value));
+            assertEquals(63 - i, tree.size());
+            assertTrue(tree.root == null || !((RBTNode<Integer>) tree.root).isRed()); // Root must be black
+            checkProperties((RBTNode<Integer>) tree.root);
+        }
+        assertTrue(tree.isEmpty());
+        assertFalse(tree.remove(1)); // Nothing left to remove
+
+        // Remove a single copy of a duplicated value, then re-key a value
+        tree.insertAll(List.of(1, 2, 2, 2, 3));
+        assertTrue(tree.remove(2));
+        assertEquals(2, tree.countInRange(2, 2));
+        assertTrue(tree.update(1, 5));
+        assertFalse(tree.update(1, 6)); // 1 is gone, so 6 is not inserted
+        assertEquals(4, tree.size());
+        assertEquals(2, tree.select(0));
+        assertEquals(5, tree.select(3));
+        checkProperties((RBTNode<Integer>) tree.root);
+    }
+
+    /**
+     * Checks that no red node has a red child, that subtree sizes are correct, and
+     * that every path from node to a leaf passes through the same number of black nodes.
+     * @return the number of black nodes on each path from node to a leaf
+     */
+    private int checkProperties(RBTNode<Integer> node) {
+        if (node == null) {
+            return 1;
+        }
+        if (node.isRed()) {
+            assertFalse(isRed(node.childLeft()) || isRed(node.childRight()), "Red node with a red child");
+        }
+        int left = checkProperties(node.childLeft());
+        int right = checkProperties(node.childRight());
+        assertEquals(left, right, "Unequal black heights below " + node);
+        assertEquals(1 + RBTNode.sizeOf(node.childLeft()) + RBTNode.sizeOf(node.childRight()), node.subtreeSize());
+        return left + (node.isRed() ? 0 : 1);
+    }
+}
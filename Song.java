@@ -19,6 +19,9 @@ public class Song implements Comparable<Song> {
     private int loudness;
     private int liveness;
     private Comparator<Song> comparator;
+    // codes of artist and genre in the dictionary they were loaded with, or -1
+    private int artistCode = -1;
+    private int genreCode = -1;
     
     // constructors
     
@@ -34,7 +37,7 @@ public class Song implements Comparable<Song> {
                 Comparator<Song> comparator) {
         this.title = title;
         this.artist = artist;
-        this.genres = genres;
+        this.genres = genre;
         this.year = year;
         this.bpm = bpm;
         this.energy = energy;
@@ -44,6 +47,31 @@ public class Song implements Comparable<Song> {
         this.comparator = comparator;
     }
     
+    public Song(String title,
+                int artistCode, // code of the artist in dictionary
+                int genreCode, // code of the genre in dictionary
+                StringDictionary dictionary, // holds the shared artist and genre strings
+                int year,
+                int bpm,
+                int energy,
+                int danceability,
+                int loudness,
+                int liveness,
+                Comparator<Song> comparator) {
+        this(title,
+             dictionary.value(artistCode),
+             dictionary.value(genreCode),
+             year,
+             bpm,
+             energy,
+             danceability,
+             loudness,
+             liveness,
+             comparator);
+        this.artistCode = artistCode;
+        this.genreCode = genreCode;
+    }
+
     public Song(String title,
                 String artist,
                 String genre,
@@ -76,6 +104,9 @@ public class Song implements Comparable<Song> {
     public int getDanceability() { return danceability; } 
     public int getLoudness() { return loudness; } 
     public int getLiveness() { return liveness; }
+    public int getArtistCode() { return artistCode; }
+    public int getGenreCode() { return genreCode; }
+    public Comparator<Song> getComparator() { return comparator; }
 
     // comparisons are made using the Comparator pass to constructor
     
@@ -0,0 +1,458 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This class describes where each song attribute is found within the rows of a
+ * songs .csv file, based on that file's header line, and turns rows of that file
+ * into Song objects. The columns may appear in any order, and additional columns
+ * are ignored. Rows can be parsed either from Strings, or directly from the UTF-8
+ * bytes of the file through a ByteParser.
+ */
+public class SongCSVFormat {
+
+    // column indices of the attributes used to create each Song
+    private int titleIndex = -1;
+    private int artistIndex = -1;
+    private int genreIndex = -1;
+    private int yearIndex = -1;
+    private int bpmIndex = -1;
+    private int danceabilityIndex = -1;
+    private int livenessIndex = -1;
+    private int loudnessIndex = -1;
+    private int energyIndex = -1;
+
+    // encodes the artists and genres of songs parsed from bytes
+    private final StringDictionary dictionary;
+
+    // returned by ByteParser.parseInt for bytes that do not hold an int
+    private static final long NOT_AN_INT = Long.MIN_VALUE;
+
+    /**
+     * Creates the format described by a header line.
+     *
+     * @param header the first line of a songs .csv file
+     * @throws IOException when the header is missing or lacks a required column
+     */
+    public SongCSVFormat(String header) throws IOException {
+        this(header, new StringDictionary());
+    }
+
+    /**
+     * Creates the format described by a header line, whose byte parsers encode
+     * the artist and genre of every song with dictionary. Formats of several
+     * files, and parsers on several threads, can share one dictionary.
+     *
+     * @param header     the first line of a songs .csv file
+     * @param dictionary the dictionary of artists and genres
+     * @throws IOException when the header is missing or lacks a required column
+     */
+    public SongCSVFormat(String header, StringDictionary dictionary) throws IOException {
+        this.dictionary = dictionary;
+        if (header == null) {
+            throw new IOException("Empty CSV file or missing header line.");
+        }
+        String[] headers = header.split(",");
+
+        // Identify column indices for required fields
+        for (int i = 0; i < headers.length; i++) {
+            switch (headers[i].trim().toLowerCase()) {
+                case "title":
+                    titleIndex = i;
+                    break;
+                case "artist":
+                    artistIndex = i;
+                    break;
+                case "top genre":
+                    genreIndex = i;
+                    break;
+                case "year":
+                    yearIndex = i;
+                    break;
+                case "bpm":
+                    bpmIndex = i;
+                    break;
+                case "nrgy":
+                    energyIndex = i;
+                    break;
+                case "dnce":
+                    danceabilityIndex = i;
+                    break;
+                case "db":
+                    loudnessIndex = i;
+                    break;
+                case "live":
+                    livenessIndex = i;
+                    break;
+            }
+        }
+
+        // Validate that all required indices are found
+        if (titleIndex == -1 || artistIndex == -1 || genreIndex == -1 || yearIndex == -1 || bpmIndex == -1 || danceabilityIndex == -1 || livenessIndex == -1 || loudnessIndex == -1|| energyIndex == -1) {
+            throw new IOException("Missing required columns in the CSV header.");
+        }
+    }
+
+    /**
+     * Creates a Song from a single line of the file.
+     *
+     * @param line       a line of the file, other than the header
+     * @param comparator the comparator passed to the new Song
+     * @return the song described by that line
+     * @throws NumberFormatException          when a numeric column cannot be parsed
+     * @throws ArrayIndexOutOfBoundsException when the line has too few columns
+     */
+    public Song parseSong(String line, Comparator<Song> comparator) {
+        String[] cols = parseCSVLine(line);
+
+        // Extract values using the identified indices
+        String title = cols[titleIndex];
+        String artist = cols[artistIndex];
+        String genre = cols[genreIndex];
+        int year = Integer.parseInt(cols[yearIndex]);
+        int energy = Integer.parseInt(cols[energyIndex]);
+        int bpm = Integer.parseInt(cols[bpmIndex]);
+        int danceability = Integer.parseInt(cols[danceabilityIndex]);
+        int loudness = Integer.parseInt(cols[loudnessIndex]);
+        int liveness = Integer.parseInt(cols[livenessIndex]);
+
+        return new Song(title, artist, genre, year, bpm, energy, danceability, loudness, liveness, comparator);
+    }
+
+    /**
+     * Creates a parser that reads rows of this format directly from bytes. Each
+     * parser reuses its own buffers, so every thread needs a separate parser.
+     *
+     * @return a new parser for rows of this format
+     */
+    public ByteParser newByteParser() {
+        return new ByteParser();
+    }
+
+    /**
+     * Parser for rows of this format that are stored as UTF-8 bytes. Fields are
+     * located in place, numeric fields are decoded straight from their bytes, and
+     * Strings are only created for the title, artist and genre. Fields are split
+     * and trimmed the same way as parseCSVLine. Artists and genres are looked up
+     * in the format's dictionary by their bytes, so each distinct one only becomes
+     * a String once, and every song shares it.
+     */
+    public class ByteParser {
+
+        // looks up artists and genres in the format's dictionary
+        private final StringDictionary.Cache cache;
+
+        // first and last+1 byte of each field needed, and whether it holds quotes
+        private final int[] starts;
+        private final int[] ends;
+        private final boolean[] quoted;
+        // holds the bytes of a quoted field with its quotes removed
+        private byte[] scratch = new byte[64];
+        // first byte in scratch of the field trimmed last
+        private int trimmedStart;
+        // columns found on the last line, and its first numeric field that is not an
+        // int (or -1), with the buffer holding that line, for error()
+        private int columns;
+        private int badField = -1;
+        private ByteBuffer lastBytes;
+
+        private ByteParser() {
+            this.cache = dictionary.newCache();
+            int needed = 1 + Math.max(Math.max(Math.max(titleIndex, artistIndex), Math.max(genreIndex, yearIndex)),
+                    Math.max(Math.max(bpmIndex, danceabilityIndex),
+                            Math.max(livenessIndex, Math.max(loudnessIndex, energyIndex))));
+            starts = new int[needed];
+            ends = new int[needed];
+            quoted = new boolean[needed];
+        }
+
+        /**
+         * Creates a Song from a single line of the file.
+         *
+         * @param bytes      the buffer holding the line
+         * @param start      the index of the first byte of the line
+         * @param end        the index after the last byte of the line, not including
+         *                   the line break
+         * @param comparator the comparator passed to the new Song
+         * @return the song described by that line
+         * @throws NumberFormatException          when a numeric column cannot be parsed
+         * @throws ArrayIndexOutOfBoundsException when the line has too few columns
+         */
+        public Song parseSong(ByteBuffer bytes, int start, int end, Comparator<Song> comparator) {
+            Song song = tryParseSong(bytes, start, end, comparator);
+            if (song == null) {
+                if (columns < starts.length) {
+                    throw new ArrayIndexOutOfBoundsException(error());
+                }
+                throw new NumberFormatException(error());
+            }
+            return song;
+        }
+
+        /**
+         * Creates a Song from a single line of the file, without throwing when the
+         * line is malformed, so that loaders can skip bad lines cheaply. The numeric
+         * columns are decoded first, so no Strings are created for a bad line.
+         *
+         * @param bytes      the buffer holding the line
+         * @param start      the index of the first byte of the line
+         * @param end        the index after the last byte of the line, not including
+         *                   the line break
+         * @param comparator the comparator passed to the new Song
+         * @return the song described by that line, or null when the line has too few
+         *         columns or a numeric column that is not an int, which error() then
+         *         describes
+         */
+        public Song tryParseSong(ByteBuffer bytes, int start, int end, Comparator<Song> comparator) {
+            badField = -1;
+            if (!split(bytes, start, end)) {
+                return null;
+            }
+
+            int year = integer(bytes, yearIndex);
+            int energy = integer(bytes, energyIndex);
+            int bpm = integer(bytes, bpmIndex);
+            int danceability = integer(bytes, danceabilityIndex);
+            int loudness = integer(bytes, loudnessIndex);
+            int liveness = integer(bytes, livenessIndex);
+            if (badField >= 0) {
+                lastBytes = bytes;
+                return null;
+            }
+            String title = string(bytes, titleIndex);
+            int artist = code(bytes, artistIndex);
+            int genre = code(bytes, genreIndex);
+
+            return new Song(title, artist, genre, dictionary, year, bpm, energy, danceability, loudness,
+                    liveness, comparator);
+        }
+
+        /**
+         * Describes why the last line passed to tryParseSong could not be parsed.
+         *
+         * @return the problem with that line, or null when it was parsed
+         */
+        public String error() {
+            if (columns < starts.length) {
+                return "Line has " + columns + " columns, but " + starts.length + " are required.";
+            }
+            if (badField < 0) {
+                return null;
+            }
+            byte[] field = new byte[ends[badField] - starts[badField]];
+            lastBytes.get(starts[badField], field);
+            return "For input string: \"" + new String(field, StandardCharsets.UTF_8).trim() + "\"";
+        }
+
+        /**
+         * Finds where each needed field of a line starts and ends. Scanning stops
+         * once the last needed field has been found.
+         *
+         * @return false when the line has too few columns
+         */
+        private boolean split(ByteBuffer bytes, int start, int end) {
+            int field = 0;
+            int fieldStart = start;
+            boolean inQuotes = false;
+            boolean hasQuotes = false;
+
+            for (int i = start; i < end; i++) {
+                byte b = bytes.get(i);
+                if (b == '"') {
+                    inQuotes = !inQuotes; // Toggle quotes
+                    hasQuotes = true;
+                } else if (b == ',' && !inQuotes) {
+                    // Split on comma if not inside quotes
+                    record(field++, fieldStart, i, hasQuotes);
+                    if (field == starts.length) {
+                        columns = field;
+                        return true;
+                    }
+                    fieldStart = i + 1;
+                    hasQuotes = false;
+                }
+            }
+
+            // Add the last field
+            record(field++, fieldStart, end, hasQuotes);
+            columns = field;
+            return field >= starts.length;
+        }
+
+        private void record(int field, int start, int end, boolean hasQuotes) {
+            starts[field] = start;
+            ends[field] = end;
+            quoted[field] = hasQuotes;
+        }
+
+        /**
+         * Returns the trimmed contents of a field as a String.
+         */
+        private String string(ByteBuffer bytes, int field) {
+            int end = trim(bytes, field);
+            return new String(scratch, trimmedStart, end - trimmedStart, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Returns the dictionary code of the trimmed contents of a field.
+         */
+        private int code(ByteBuffer bytes, int field) {
+            int end = trim(bytes, field);
+            return cache.code(scratch, trimmedStart, end - trimmedStart);
+        }
+
+        /**
+         * Copies a field into scratch, and finds its contents without surrounding
+         * whitespace, which start at trimmedStart.
+         * @return the index in scratch after the last byte of the contents
+         */
+        private int trim(ByteBuffer bytes, int field) {
+            int length = unquote(bytes, field);
+            int start = 0;
+            while (start < length && (scratch[start] & 0xff) <= ' ') {
+                start++;
+            }
+            while (length > start && (scratch[length - 1] & 0xff) <= ' ') {
+                length--;
+            }
+            trimmedStart = start;
+            return length;
+        }
+
+        /**
+         * Decodes a field holding a signed decimal int, in the same way as
+         * Integer.parseInt on the trimmed field. When the field is not an int, the
+         * first such field is remembered in badField and 0 is returned.
+         */
+        private int integer(ByteBuffer bytes, int field) {
+            long value;
+            if (quoted[field]) {
+                int end = unquote(bytes, field);
+                value = parseInt(ByteBuffer.wrap(scratch), 0, end);
+            } else {
+                value = parseInt(bytes, starts[field], ends[field]);
+            }
+            if (value == NOT_AN_INT) {
+                if (badField < 0) {
+                    badField = field;
+                }
+                return 0;
+            }
+            return (int) value;
+        }
+
+        /**
+         * Copies the bytes of a field without its quotes into scratch.
+         * @return the number of bytes copied
+         */
+        private int unquote(ByteBuffer bytes, int field) {
+            int length = ends[field] - starts[field];
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            if (!quoted[field]) {
+                bytes.get(starts[field], scratch, 0, length);
+                return length;
+            }
+            int copied = 0;
+            for (int i = starts[field]; i < ends[field]; i++) {
+                byte b = bytes.get(i);
+                if (b != '"') {
+                    scratch[copied++] = b;
+                }
+            }
+            return copied;
+        }
+
+        /**
+         * Parses the trimmed bytes between start and end as a signed decimal int.
+         * @return the int, or NOT_AN_INT when the bytes do not hold one
+         */
+        private long parseInt(ByteBuffer bytes, int start, int end) {
+            while (start < end && (bytes.get(start) & 0xff) <= ' ') {
+                start++;
+            }
+            while (end > start && (bytes.get(end - 1) & 0xff) <= ' ') {
+                end--;
+            }
+            int i = start;
+            boolean negative = false;
+            if (i < end && (bytes.get(i) == '-' || bytes.get(i) == '+')) {
+                negative = bytes.get(i) == '-';
+                i++;
+            }
+            if (i == end) {
+                return NOT_AN_INT;
+            }
+            long value = 0;
+            for (; i < end; i++) {
+                int digit = bytes.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    return NOT_AN_INT;
+                }
+                value = value * 10 + digit;
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    return NOT_AN_INT;
+                }
+            }
+            value = negative ? -value : value;
+            if (value > Integer.MAX_VALUE) {
+                return NOT_AN_INT;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Checks whether a line holds nothing but whitespace, such as the \r left of
+     * an empty line with a \r\n line break. Loaders skip such lines.
+     *
+     * @param bytes the buffer holding the line
+     * @param start the index of the first byte of the line
+     * @param end   the index after the last byte of the line
+     * @return true if the line is blank
+     */
+    public static boolean isBlank(ByteBuffer bytes, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if ((bytes.get(i) & 0xff) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a single line of a CSV file into an array of strings.
+     * This method handles fields enclosed in double quotes and fields
+     * containing commas.
+     *
+     * @param line the CSV line to parse
+     * @return an array of strings representing the fields in the CSV line
+     */
+    public static String[] parseCSVLine(String line) {
+        List<String> result = new ArrayList<>();
+        StringBuilder currentField = new StringBuilder();
+        // Set the initial state of the quotes to be false
+        boolean inQuotes = false;
+
+        for (char c : line.toCharArray()) {
+            if (c == '"') {
+                inQuotes = !inQuotes; // Toggle quotes
+            } else if (c == ',' && !inQuotes) {
+                // Split on comma if not inside quotes
+                result.add(currentField.toString().trim());
+                currentField = new StringBuilder();
+            } else {
+                currentField.append(c);
+            }
+        }
+
+        // Add the last field
+        result.add(currentField.toString().trim());
+
+        return result.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,203 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * This class extends IterableRedBlackTree into a tree of songs where every node also
+ * stores the most recent year found in its subtree. This lets the tree answer
+ * "k most recent songs within a range" by only visiting the subtrees that can still
+ * contain one of the k most recent songs, instead of collecting and sorting the
+ * whole range.
+ */
+public class SongRedBlackTree extends IterableRedBlackTree<Song> {
+
+    /**
+     * Node type used by this tree, which adds the maximum year of its subtree to
+     * the information stored by RBTNode.
+     */
+    protected static class YearNode extends RBTNode<Song> {
+
+        // the most recent year of any song in the subtree rooted at this node
+        protected int maxYear;
+
+        /**
+         * Constructor that creates a new node with the value data.
+         * @param data the song the new node stores
+         */
+        public YearNode(Song data) {
+            super(data);
+            this.maxYear = data.getYear();
+        }
+    }
+
+    /**
+     * Creates a YearNode for every song inserted into this tree.
+     * @param data the song the new node stores
+     * @return a new red node holding data
+     */
+    @Override
+    protected RBTNode<Song> createNode(Song data) {
+        return new YearNode(data);
+    }
+
+    /**
+     * Recomputes the subtree size and the maximum year of a node whose children were
+     * changed by a rotation or by an insertion below it.
+     * @param node the node whose children were changed
+     */
+    @Override
+    protected void updateAugmentation(BinaryTreeNode<Song> node) {
+        super.updateAugmentation(node);
+        YearNode yearNode = (YearNode) node;
+        int maxYear = yearNode.getData().getYear();
+        if (yearNode.childLeft() != null) {
+            maxYear = Math.max(maxYear, ((YearNode) yearNode.childLeft()).maxYear);
+        }
+        if (yearNode.childRight() != null) {
+            maxYear = Math.max(maxYear, ((YearNode) yearNode.childRight()).maxYear);
+        }
+        yearNode.maxYear = maxYear;
+    }
+
+    /**
+     * Returns the k most recent songs between min and max that pass the filter, most
+     * recent first, and songs from the same year in sorted order, as a stable sort
+     * by year of the range would return them. Nodes are explored best-first by the
+     * maximum year of their subtree and then by the sorted position of the subtree's
+     * first song, so a subtree is only opened when it may still hold the next song
+     * to return, and subtrees entirely outside of min and max are never opened.
+     * Among subtrees holding the same most recent year the search descends into the
+     * leftmost one, so without a filter each song returned costs one descent, about
+     * log n node visits.
+     *
+     * @param k      the maximum number of songs to return
+     * @param min    the minimum song to consider, or null for no minimum
+     * @param max    the maximum song to consider, or null for no maximum
+     * @param filter only songs this accepts are returned, or null to accept all
+     * @return up to k songs in descending order of year
+     */
+    public List<Song> mostRecent(int k, Comparable<Song> min, Comparable<Song> max,
+                                 Predicate<Song> filter) {
+        List<Song> result = new ArrayList<>();
+        if (k <= 0 || this.root == null) {
+            return result;
+        }
+
+        // Entries are either whole subtrees, bounded by their maxYear and the position
+        // of their first song, or single songs, with exactly their year and position
+        PriorityQueue<Candidate> queue = new PriorityQueue<>(
+                Comparator.comparingInt((Candidate c) -> c.year).reversed()
+                        .thenComparingInt(c -> c.position));
+        YearNode root = (YearNode) this.root;
+        queue.add(new Candidate(root, root.maxYear, 0, true));
+
+        while (!queue.isEmpty() && result.size() < k) {
+            Candidate next = queue.poll();
+            Song song = next.node.getData();
+            if (!next.subtree) {
+                result.add(song); // no remaining subtree can be more recent
+                continue;
+            }
+
+            YearNode left = (YearNode) next.node.childLeft();
+            int position = next.position + RBTNode.sizeOf(left); // of the song in this node
+            boolean aboveMin = min == null || min.compareTo(song) <= 0;
+            boolean belowMax = max == null || max.compareTo(song) >= 0;
+            if (aboveMin && belowMax && (filter == null || filter.test(song))) {
+                queue.add(new Candidate(next.node, song.getYear(), position, false));
+            }
+            // the left subtree only holds songs at or below this one, and the right
+            // subtree only songs at or above it
+            if (left != null && aboveMin) {
+                queue.add(new Candidate(left, left.maxYear, next.position, true));
+            }
+            YearNode right = (YearNode) next.node.childRight();
+            if (right != null && belowMax) {
+                queue.add(new Candidate(right, right.maxYear, position + 1, true));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * An entry in the best-first search of mostRecent: either the subtree rooted at
+     * node, or only the song stored in node. position is the sorted position of the
+     * song, or of the first song of the subtree.
+     */
+    private static class Candidate {
+        private final YearNode node;
+        private final int year;
+        private final int position;
+        private final boolean subtree;
+
+        private Candidate(YearNode node, int year, int position, boolean subtree) {
+            this.node = node;
+            this.year = year;
+            this.position = position;
+            this.subtree = subtree;
+        }
+    }
+
+    // Test Cases
+
+    /**
+     * Creates a song ordered by energy for the tests below.
+     */
+    private static Song song(String title, int year, int energy, int danceability) {
+        return new Song(title, "artist", "genre", year, 100, energy, danceability, -5, 10,
+                Comparator.comparingInt(Song::getEnergy));
+    }
+
+    /**
+     * Test 1: Ensures mostRecent matches sorting the whole range by year.
+     * - Inserts songs in an order that triggers rotations.
+     * - Checks the most recent songs with and without an energy range.
+     */
+    @Test
+    public void testMostRecentWithinRange() {
+        SongRedBlackTree tree = new SongRedBlackTree();
+        tree.insert(song("A", 2010, 10, 50));
+        tree.insert(song("B", 2019, 20, 50));
+        tree.insert(song("C", 2012, 30, 50));
+        tree.insert(song("D", 2018, 40, 50));
+        tree.insert(song("E", 2011, 50, 50));
+        tree.insert(song("F", 2017, 60, 50));
+        tree.insert(song("G", 2015, 70, 50));
+
+        List<Song> recent = tree.mostRecent(3, null, null, null);
+        assertEquals(3, recent.size());
+        assertEquals("B", recent.get(0).getTitle());
+        assertEquals("D", recent.get(1).getTitle());
+        assertEquals("F", recent.get(2).getTitle());
+
+        // Only songs with energy from 25 to 70
+        recent = tree.mostRecent(2, song("", 0, 25, 0), song("", 0, 70, 0), null);
+        assertEquals(2, recent.size());
+        assertEquals("D", recent.get(0).getTitle());
+        assertEquals("F", recent.get(1).getTitle());
+    }
+
+    /**
+     * Test 2: Ensures the filter is applied and that fewer than k songs are returned
+     * when the range does not hold k matching songs.
+     */
+    @Test
+    public void testMostRecentWithFilter() {
+        SongRedBlackTree tree = new SongRedBlackTree();
+        tree.insert(song("A", 2010, 10, 80));
+        tree.insert(song("B", 2019, 20, 30));
+        tree.insert(song("C", 2012, 30, 90));
+        tree.insert(song("D", 2018, 40, 20));
+
+        List<Song> recent = tree.mostRecent(5, null, null, s -> s.getDanceability() > 50);
+        assertEquals(2, recent.size());
+        assertEquals("C", recent.get(0).getTitle());
+        assertEquals("A", recent.get(1).getTitle());
+
+        assertTrue(tree.mostRecent(5, song("", 0, 100, 0), null, null).isEmpty());
+    }
+}
@@ -0,0 +1,170 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class assigns compact int codes to strings that repeat across many songs,
+ * such as artists and genres, and keeps one canonical String for each code. Songs
+ * loaded with the same dictionary share those Strings instead of holding their own
+ * copies, and can be compared by artist or genre by comparing their codes.
+ *
+ * Codes are assigned in the order strings are first seen, starting at zero. A
+ * dictionary can be shared by several threads. Parsers that read strings straight
+ * from bytes look them up through a Cache of their own, so that strings already
+ * seen are found without creating a String.
+ */
+public class StringDictionary {
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    // canonical strings by code; replaced by a larger copy when full
+    private volatile String[] values = new String[16];
+    private int size = 0; // guarded by this
+
+    /**
+     * Returns the code of value, assigning the next code when value is new.
+     *
+     * @param value the string to look up
+     * @return the code of value
+     * @throws NullPointerException if value is null
+     */
+    public int code(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(value);
+            if (code == null) {
+                String[] array = values;
+                if (size == array.length) {
+                    array = Arrays.copyOf(array, size * 2);
+                }
+                array[size] = value;
+                values = array; // publishes the new string before its code is handed out
+                code = size++;
+                codes.put(value, code);
+            }
+            return code;
+        }
+    }
+
+    /**
+     * Returns the code of value, without assigning one when value is new.
+     *
+     * @param value the string to look up
+     * @return the code of value, or -1 when value has no code
+     */
+    public int find(String value) {
+        Integer code = (value == null) ? null : codes.get(value);
+        return (code == null) ? -1 : code;
+    }
+
+    /**
+     * Returns the canonical string of a code.
+     *
+     * @param code a code returned by this dictionary
+     * @return the string with that code
+     */
+    public String value(int code) {
+        return values[code];
+    }
+
+    /**
+     * Returns the number of codes assigned so far.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Creates a cache for looking strings up by their UTF-8 bytes. Each cache must
+     * only be used by one thread.
+     *
+     * @return a new, empty cache in front of this dictionary
+     */
+    public Cache newCache() {
+        return new Cache();
+    }
+
+    /**
+     * Hash table from the UTF-8 bytes of strings to their codes. Bytes seen before
+     * are compared in place, so only new strings are decoded and passed to the
+     * dictionary.
+     */
+    public class Cache {
+        // open addressing table of entries, or -1 for empty slots
+        private int[] slots = newSlots(64);
+        private byte[][] keys = new byte[32][];
+        private int[] entryCodes = new int[32];
+        private int entries = 0;
+
+        /**
+         * Returns the code of the string encoded by length UTF-8 bytes at offset.
+         */
+        public int code(byte[] bytes, int offset, int length) {
+            int hash = 1;
+            for (int i = offset; i < offset + length; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            int mask = slots.length - 1;
+            for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+                int entry = slots[slot];
+                if (entry < 0) {
+                    return add(slot, bytes, offset, length);
+                }
+                if (Arrays.equals(keys[entry], 0, keys[entry].length, bytes, offset, offset + length)) {
+                    return entryCodes[entry];
+                }
+            }
+        }
+
+        private int add(int slot, byte[] bytes, int offset, int length) {
+            String value = new String(bytes, offset, length, StandardCharsets.UTF_8);
+            int code = StringDictionary.this.code(value);
+            if (entries == keys.length) {
+                keys = Arrays.copyOf(keys, entries * 2);
+                entryCodes = Arrays.copyOf(entryCodes, entries * 2);
+            }
+            keys[entries] = Arrays.copyOfRange(bytes, offset, offset + length);
+            entryCodes[entries] = code;
+            slots[slot] = entries++;
+            if (entries * 2 > slots.length) {
+                rehash();
+            }
+            return code;
+        }
+
+        /**
+         * Doubles the table, keeping it at most half full.
+         */
+        private void rehash() {
+            slots = newSlots(slots.length * 2);
+            int mask = slots.length - 1;
+            for (int entry = 0; entry < entries; entry++) {
+                int hash = 1;
+                for (byte b : keys[entry]) {
+                    hash = 31 * hash + b;
+                }
+                int slot = mix(hash) & mask;
+                while (slots[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = entry;
+            }
+        }
+    }
+
+    private static int[] newSlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, -1);
+        return slots;
+    }
+
+    /**
+     * Spreads the bits of a hash, so that similar strings land in different slots.
+     */
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -28,6 +28,12 @@ public class Tree_Placeholder implements IterableSortedCollection<Song> {
         else return 4;
     }
 
+    public boolean remove(Song data) {
+        if(data == null || data != lastAddedSong) return false;
+        lastAddedSong = null; // only the last added song can be removed
+        return true;
+    }
+
     public boolean isEmpty() {
         return false;
     }
@@ -51,6 +57,33 @@ public class Tree_Placeholder implements IterableSortedCollection<Song> {
     public void setIteratorMin(Comparable<Song> min) { this.min = min; }
     public void setIteratorMax(Comparable<Song> max) { this.max = max; }
 
+    // Order-statistic methods: answered from the same fixed list of songs,
+    // without regard to the min and max set for iterators.
+    public int rank(Comparable<Song> key) {
+        int count = 0;
+        for(Song song : allSongs())
+            if(key.compareTo(song) > 0) count++;
+        return count;
+    }
+
+    public Song select(int index) {
+        return allSongs().get(index);
+    }
+
+    public int countInRange(Comparable<Song> lo, Comparable<Song> hi) {
+        int count = 0;
+        for(Song song : allSongs())
+            if( (lo == null || lo.compareTo(song) <= 0) &&
+                (hi == null || hi.compareTo(song) >= 0)) count++;
+        return count;
+    }
+
+    private List<Song> allSongs() {
+        List<Song> tmp = new ArrayList<>(songs);
+        if(lastAddedSong != null) tmp.add(lastAddedSong);
+        return tmp;
+    }
+
     public Iterator<Song> iterator() {
         List<Song> tmp = new ArrayList<>(songs); // make a copy of list
         if(lastAddedSong != null) tmp.add(lastAddedSong); // with added song